@@ -0,0 +1,64 @@
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.attribute.Shape;
+import guru.nidi.graphviz.attribute.Style;
+import guru.nidi.graphviz.model.MutableGraph;
+import guru.nidi.graphviz.model.MutableNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static guru.nidi.graphviz.model.Factory.mutGraph;
+import static guru.nidi.graphviz.model.Factory.mutNode;
+
+// Collects the graph into a graphviz-java MutableGraph, the model the tool used to draw through.
+// Only the schemeGraph benchmark builds one now, to compare with DOT text; it implements GraphSink,
+// so it has to be in the default package with the tool's classes.
+public class GraphvizSink implements GraphSink {
+
+    private final MutableGraph graph = mutGraph("CFGscheme").setDirected(true);
+    private final List<MutableNode> nodes = new ArrayList<>();
+
+    public MutableGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public void beginMethod(CharSequence label) {
+    }
+
+    @Override
+    public void node(int id, CharSequence label, NodeKind kind) {
+        MutableNode n = mutNode(String.valueOf(id)).add(Label.of(label.toString())).add(shape(kind));
+        while (nodes.size() <= id)
+            nodes.add(null);
+        nodes.set(id, n);
+        graph.add(n);
+    }
+
+    @Override
+    public void edge(int from, int to, EdgeKind kind) {
+        MutableNode source = nodes.get(from);
+        if (kind == EdgeKind.FALSE)
+            source.addLink(source.linkTo(nodes.get(to)).with(Style.DASHED));
+        else
+            source.addLink(nodes.get(to));
+    }
+
+    @Override
+    public void endMethod() {
+    }
+
+    private static Shape shape(NodeKind kind) {
+        switch (kind) {
+            case ENTRY:
+            case RETURN:
+                return Shape.ELLIPSE;
+            case BRANCH:
+                return Shape.DIAMOND;
+            case JOIN:
+                return Shape.POINT;
+            default:
+                return Shape.RECTANGLE;
+        }
+    }
+}
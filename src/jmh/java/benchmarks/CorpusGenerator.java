@@ -0,0 +1,160 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+// Writes synthetic Java sources of a given shape for benchmarks and stress runs:
+// many methods, long methods, deeply nested if/for and very long expressions.
+// Everything comes from one seeded Random, the same seed and sizes always give the same text.
+//
+//   java benchmarks.CorpusGenerator --out corpus --files 10 --methods 100 --statements 50 --depth 5 --terms 20
+public final class CorpusGenerator {
+
+    private static final int VARIABLES = 8;
+    private static final String[] OPERATORS = {"+", "-", "*", "^", "&", "|"};
+    private static final String[] COMPARISONS = {"<", ">", "<=", ">=", "==", "!="};
+
+    private final Random random;
+
+    public CorpusGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    // a class with methods methods of statements statements each, one if/for chain nested depth deep
+    // in every method and one expression of terms terms
+    public String generate(String className, int methods, int statements, int depth, int terms) {
+        StringBuilder out = new StringBuilder();
+        out.append("public class ").append(className).append(" {\n");
+        for (int i = 0; i < methods; i++) {
+            out.append('\n');
+            method(out, "method" + i, statements, depth, terms);
+        }
+        return out.append("}\n").toString();
+    }
+
+    private void method(StringBuilder out, String name, int statements, int depth, int terms) {
+        out.append("    public int ").append(name).append("(int[] values, int limit) {\n");
+        for (int v = 0; v < VARIABLES; v++)
+            line(out, 2).append("int v").append(v).append(" = ").append(random.nextInt(100)).append(";\n");
+        // the nested chain and the long expression go at random places among the statements
+        int nestAt = random.nextInt(statements + 1);
+        int expressionAt = random.nextInt(statements + 1);
+        for (int i = 0; i <= statements; i++) {
+            if (i == nestAt && depth > 0)
+                nest(out, 2, depth);
+            if (i == expressionAt && terms > 0)
+                line(out, 2).append(variable()).append(" = ").append(expression(terms)).append(";\n");
+            if (i < statements)
+                statement(out, 2);
+        }
+        line(out, 2).append("return ").append(expression(3)).append(";\n");
+        out.append("    }\n");
+    }
+
+    private void statement(StringBuilder out, int indent) {
+        switch (random.nextInt(6)) {
+            case 0:
+                line(out, indent).append(variable()).append("++;\n");
+                break;
+            case 1:
+                line(out, indent).append("limit = Math.max(limit, ").append(expression(2)).append(");\n");
+                break;
+            case 2:
+                line(out, indent).append("if (").append(condition()).append(") {\n");
+                line(out, indent + 1).append(variable()).append(" = ").append(expression(3)).append(";\n");
+                line(out, indent).append("} else {\n");
+                line(out, indent + 1).append(variable()).append(" += limit;\n");
+                line(out, indent).append("}\n");
+                break;
+            case 3:
+                line(out, indent).append("for (int i = 0; i < limit; i++) {\n");
+                line(out, indent + 1).append(variable()).append(" ^= values[i % values.length];\n");
+                line(out, indent).append("}\n");
+                break;
+            default:
+                line(out, indent).append(variable()).append(" = ").append(expression(4)).append(";\n");
+        }
+    }
+
+    // alternately if and for, each level with a statement before the next one
+    private void nest(StringBuilder out, int indent, int depth) {
+        for (int level = 0; level < depth; level++) {
+            int at = indent + level;
+            if (level % 2 == 0)
+                line(out, at).append("if (").append(condition()).append(") {\n");
+            else
+                line(out, at).append("for (int i").append(level).append(" = 0; i").append(level)
+                        .append(" < limit; i").append(level).append("++) {\n");
+            line(out, at + 1).append(variable()).append(" = ").append(expression(2)).append(";\n");
+        }
+        for (int level = depth - 1; level >= 0; level--)
+            line(out, indent + level).append("}\n");
+    }
+
+    private String expression(int terms) {
+        StringBuilder out = new StringBuilder(terms * 6);
+        for (int i = 0; i < terms; i++) {
+            if (i > 0)
+                out.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            if (random.nextInt(3) == 0)
+                out.append(random.nextInt(1000));
+            else
+                out.append(variable());
+        }
+        return out.toString();
+    }
+
+    // the bit operators bind weaker than a comparison, the right side goes in parentheses
+    private String condition() {
+        return variable() + " " + COMPARISONS[random.nextInt(COMPARISONS.length)] + " (" + expression(2) + ")";
+    }
+
+    private String variable() {
+        return "v" + random.nextInt(VARIABLES);
+    }
+
+    private static StringBuilder line(StringBuilder out, int indent) {
+        for (int i = 0; i < indent; i++)
+            out.append("    ");
+        return out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = 1;
+        int files = 1;
+        int methods = 10;
+        int statements = 20;
+        int depth = 3;
+        int terms = 10;
+        Path out = Paths.get("corpus");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed"))
+                seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--files"))
+                files = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--methods"))
+                methods = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--statements"))
+                statements = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--depth"))
+                depth = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--terms"))
+                terms = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--out"))
+                out = Paths.get(args[++i]);
+            else
+                throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+        Files.createDirectories(out);
+        CorpusGenerator generator = new CorpusGenerator(seed);
+        for (int i = 0; i < files; i++) {
+            String name = "Generated" + i;
+            String source = generator.generate(name, methods, statements, depth, terms);
+            Files.write(out.resolve(name + ".java"), source.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Sources the benchmarks run on. The synthetic ones come from CorpusGenerator with a fixed seed,
+// the same name always gives the same source so results of different commits can be compared.
+final class Fixtures {
+
+    static final long SEED = 1;
+
+    private Fixtures() {
+    }
+
+    static String load(String name) throws IOException {
+        switch (name) {
+            case "TestMainClass":
+                // gradle jmh runs in the project directory
+                return new String(Files.readAllBytes(Paths.get("TestMainClass.java")), StandardCharsets.UTF_8);
+            case "methods-200":
+                return new CorpusGenerator(SEED).generate("Methods", 200, 10, 2, 5);
+            case "statements-5000":
+                return new CorpusGenerator(SEED).generate("Statements", 1, 5000, 0, 0);
+            case "nesting-50":
+                return new CorpusGenerator(SEED).generate("Nesting", 1, 10, 50, 0);
+            case "expression-2000":
+                return new CorpusGenerator(SEED).generate("Expression", 1, 10, 0, 2000);
+            default:
+                throw new IllegalArgumentException("unknown fixture " + name);
+        }
+    }
+
+    // one shape grown by a factor, for watching how time grows with size
+    static String scaled(String shape, int scale) {
+        CorpusGenerator generator = new CorpusGenerator(SEED);
+        switch (shape) {
+            case "statements":
+                return generator.generate("Statements", 1, 625 * scale, 0, 0);
+            case "nesting":
+                return generator.generate("Nesting", 1, 10, 6 * scale, 0);
+            case "methods":
+                return generator.generate("Methods", 50 * scale, 10, 2, 5);
+            case "expression":
+                return generator.generate("Expression", 1, 10, 0, 250 * scale);
+            default:
+                throw new IllegalArgumentException("unknown shape " + shape);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package benchmarks;
+
+import guru.nidi.graphviz.model.MutableGraph;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import parsers.Java8Parser;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+// The classes of the tool are in the default package, which can't be imported from a package,
+// and JMH doesn't take benchmarks in the default package. They are called through method handles
+// that are looked up once; next to the stages they run, a call through a handle costs nothing.
+final class Pipeline {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> CFG = type("CFG");
+    private static final Class<?> GRAPH_SINK = type("GraphSink");
+    private static final Class<?> FLOW_GRAPH_BUILDER = type("FlowGraphBuilder");
+    // in the default package of the jmh sources
+    private static final Class<?> GRAPHVIZ_SINK = type("GraphvizSink");
+    private static final Class<?> DOT_WRITER = type("DotWriter");
+    private static final Class<?> METHOD_GRAPHS = type("MethodGraphs");
+    private static final Class<?> METHOD = type("MethodGraphs$Method");
+    private static final Class<?> FLOW_GRAPH_SINK = type("FlowGraphSink");
+    private static final Class<?> FLOW_GRAPH = type("FlowGraph");
+    private static final Class<?> DOMINATOR_TREE = type("DominatorTree");
+
+    private static final MethodHandle NEW_CFG = constructor(CFG, ParseTree.class, TokenStream.class);
+    private static final MethodHandle HANDLE = method(CFG, "handle", void.class, FLOW_GRAPH_BUILDER);
+    private static final MethodHandle NEW_BUILDER = constructor(FLOW_GRAPH_BUILDER, GRAPH_SINK);
+    private static final MethodHandle NEW_GRAPHVIZ_SINK = constructor(GRAPHVIZ_SINK);
+    private static final MethodHandle GET_GRAPH = method(GRAPHVIZ_SINK, "getGraph", MutableGraph.class);
+    private static final MethodHandle NEW_DOT_WRITER = constructor(DOT_WRITER, Writer.class);
+    private static final MethodHandle END_GRAPH = method(DOT_WRITER, "endGraph", void.class);
+    private static final MethodHandle NEW_METHOD_GRAPHS = constructor(METHOD_GRAPHS);
+    private static final MethodHandle GET_METHODS = method(METHOD_GRAPHS, "getMethods", List.class);
+    private static final MethodHandle GET_DOT = method(METHOD, "getDot", String.class);
+    private static final MethodHandle NEW_FLOW_GRAPH_SINK = constructor(FLOW_GRAPH_SINK);
+    private static final MethodHandle GET_FLOW_GRAPH = method(FLOW_GRAPH_SINK, "getGraph", FLOW_GRAPH);
+    private static final MethodHandle GET_METHOD_COUNT = method(FLOW_GRAPH, "getMethodCount", int.class);
+    private static final MethodHandle DOMINATORS = function(DOMINATOR_TREE, "dominators", DOMINATOR_TREE,
+            FLOW_GRAPH, int.class);
+    private static final MethodHandle NEW_LIVE_VARIABLES = constructor(type("LiveVariables"), FLOW_GRAPH, int.class);
+    private static final MethodHandle NEW_REACHING_DEFINITIONS = constructor(type("ReachingDefinitions"),
+            FLOW_GRAPH, int.class);
+    private static final MethodHandle POST_DOMINATORS = function(DOMINATOR_TREE, "postDominators", DOMINATOR_TREE,
+            FLOW_GRAPH, int.class);
+    private static final MethodHandle INSTALL_PREDICTION = function(type("Java8Prediction"), "install",
+            Java8Parser.class, Java8Parser.class);
+
+    private Pipeline() {
+    }
+
+    // the parser as Parser uses it, with LL at the decisions SLL gets wrong
+    static Java8Parser parser() {
+        try {
+            return (Java8Parser) INSTALL_PREDICTION.invoke(new Java8Parser(null));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // new CFG(tree, tokens), the syntax tree copy CFG builds its graph from
+    static Object cfg(ParseTree tree, TokenStream tokens) {
+        try {
+            return (Object) NEW_CFG.invoke(tree, tokens);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // the graphviz-java model toScheme() used to render
+    static MutableGraph graph(Object cfg) {
+        try {
+            Object sink = (Object) NEW_GRAPHVIZ_SINK.invoke();
+            HANDLE.invoke(cfg, (Object) NEW_BUILDER.invoke(sink));
+            return (MutableGraph) GET_GRAPH.invoke(sink);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // the FlowGraph model, with its successor and predecessor rows
+    static Object flowGraph(Object cfg) {
+        try {
+            Object sink = (Object) NEW_FLOW_GRAPH_SINK.invoke();
+            HANDLE.invoke(cfg, (Object) NEW_BUILDER.invoke(sink));
+            return (Object) GET_FLOW_GRAPH.invoke(sink);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // dominator and post-dominator trees of every method, one after the other
+    static Object[] dominators(Object flowGraph) {
+        try {
+            int methods = (int) GET_METHOD_COUNT.invoke(flowGraph);
+            Object[] trees = new Object[methods * 2];
+            for (int m = 0; m < methods; m++) {
+                trees[m * 2] = (Object) DOMINATORS.invoke(flowGraph, m);
+                trees[m * 2 + 1] = (Object) POST_DOMINATORS.invoke(flowGraph, m);
+            }
+            return trees;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // live variables and reaching definitions of every method, one after the other
+    static Object[] dataflow(Object flowGraph) {
+        try {
+            int methods = (int) GET_METHOD_COUNT.invoke(flowGraph);
+            Object[] results = new Object[methods * 2];
+            for (int m = 0; m < methods; m++) {
+                results[m * 2] = (Object) NEW_LIVE_VARIABLES.invoke(flowGraph, m);
+                results[m * 2 + 1] = (Object) NEW_REACHING_DEFINITIONS.invoke(flowGraph, m);
+            }
+            return results;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // the whole file as one DOT digraph
+    static String dot(Object cfg) {
+        try {
+            StringWriter out = new StringWriter();
+            Object writer = (Object) NEW_DOT_WRITER.invoke((Writer) out);
+            HANDLE.invoke(cfg, (Object) NEW_BUILDER.invoke(writer));
+            END_GRAPH.invoke(writer);
+            return out.toString();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // one DOT digraph per method, what toScheme() renders
+    static List<String> methodDots(Object cfg) {
+        try {
+            Object graphs = (Object) NEW_METHOD_GRAPHS.invoke();
+            HANDLE.invoke(cfg, (Object) NEW_BUILDER.invoke(graphs));
+            List<String> dots = new ArrayList<>();
+            for (Object method : (List<?>) GET_METHODS.invoke(graphs))
+                dots.add((String) GET_DOT.invoke(method));
+            return dots;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            return LOOKUP.findConstructor(type, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle method(Class<?> type, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            return LOOKUP.findVirtual(type, name, MethodType.methodType(result, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle function(Class<?> type, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(type, name, MethodType.methodType(result, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException)
+            return (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
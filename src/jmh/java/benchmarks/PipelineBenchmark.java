@@ -0,0 +1,145 @@
+package benchmarks;
+
+import guru.nidi.graphviz.model.MutableGraph;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Every stage of the pipeline on its own, each one starts from the output of the stage before it,
+// which is made once in setup: lexing, parsing in SLL, in LL and in the two stages of Parser, the CFG tree copy, building
+// the FlowGraph model, its dominator trees and dataflow, building the graphviz graph and writing DOT.
+// Rendering is in RenderBenchmark.
+// The settings are fixed here so that results.json files of different commits compare.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PipelineBenchmark {
+
+    @Param({"TestMainClass", "methods-200", "statements-5000", "nesting-50", "expression-2000"})
+    public String fixture;
+
+    private String source;
+    private List<Token> tokens;
+    private CommonTokenStream tokenStream;
+    private ParserRuleContext tree;
+    private Object cfg;
+    private Object flowGraph;
+    private Java8Parser parser;
+    private Java8Parser twoStageParser;
+
+    @Setup
+    public void setUp() throws Exception {
+        source = Fixtures.load(fixture);
+        tokenStream = lex();
+        tokens = new ArrayList<>(tokenStream.getTokens());
+        parser = new Java8Parser(null);
+        twoStageParser = Pipeline.parser();
+        tree = parse(PredictionMode.LL);
+        cfg = Pipeline.cfg(tree, tokenStream);
+        flowGraph = Pipeline.flowGraph(cfg);
+    }
+
+    private CommonTokenStream lex() {
+        CommonTokenStream stream = new CommonTokenStream(new Java8Lexer(new ANTLRInputStream(source)));
+        stream.fill();
+        return stream;
+    }
+
+    // SLL runs with the default error strategy and reports nothing: a file SLL gets wrong
+    // is still parsed to the end, the time is that of SLL prediction and not of a bail out
+    private ParserRuleContext parse(PredictionMode mode) {
+        parser.setTokenStream(new CommonTokenStream(new ListTokenSource(tokens)));
+        parser.removeErrorListeners();
+        parser.getInterpreter().setPredictionMode(mode);
+        return parser.compilationUnit();
+    }
+
+    @Benchmark
+    public int lexer() {
+        return lex().size();
+    }
+
+    @Benchmark
+    public ParserRuleContext parseSLL() {
+        return parse(PredictionMode.SLL);
+    }
+
+    @Benchmark
+    public ParserRuleContext parseLL() {
+        return parse(PredictionMode.LL);
+    }
+
+    // what Parser does: SLL with LL at the rules of Java8Prediction, bailing out to a full LL parse
+    // on the first syntax error, which none of the fixtures has
+    @Benchmark
+    public ParserRuleContext parseTwoStage() {
+        twoStageParser.setTokenStream(new CommonTokenStream(new ListTokenSource(tokens)));
+        twoStageParser.removeErrorListeners();
+        twoStageParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        twoStageParser.setErrorHandler(new BailErrorStrategy());
+        try {
+            return twoStageParser.compilationUnit();
+        } catch (ParseCancellationException e) {
+            twoStageParser.setTokenStream(new CommonTokenStream(new ListTokenSource(tokens)));
+            twoStageParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            twoStageParser.setErrorHandler(new DefaultErrorStrategy());
+            return twoStageParser.compilationUnit();
+        }
+    }
+
+    @Benchmark
+    public Object cfgTree() {
+        return Pipeline.cfg(tree, tokenStream);
+    }
+
+    @Benchmark
+    public Object flowGraph() {
+        return Pipeline.flowGraph(cfg);
+    }
+
+    @Benchmark
+    public Object[] dominators() {
+        return Pipeline.dominators(flowGraph);
+    }
+
+    @Benchmark
+    public Object[] dataflow() {
+        return Pipeline.dataflow(flowGraph);
+    }
+
+    @Benchmark
+    public MutableGraph schemeGraph() {
+        return Pipeline.graph(cfg);
+    }
+
+    @Benchmark
+    public String dot() {
+        return Pipeline.dot(cfg);
+    }
+}
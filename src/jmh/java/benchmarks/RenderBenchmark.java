@@ -0,0 +1,53 @@
+package benchmarks;
+
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Rendering the methods to PNG through graphviz-java, as toScheme() does one method at a time.
+// Kept apart from PipelineBenchmark, a layout is so much slower than everything else
+// that only the small fixtures are worth it.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class RenderBenchmark {
+
+    @Param({"TestMainClass", "methods-200"})
+    public String fixture;
+
+    private List<String> methodDots;
+
+    @Setup
+    public void setUp() throws Exception {
+        CommonTokenStream tokens = new CommonTokenStream(new Java8Lexer(new ANTLRInputStream(Fixtures.load(fixture))));
+        Java8Parser parser = new Java8Parser(tokens);
+        methodDots = Pipeline.methodDots(Pipeline.cfg(parser.compilationUnit(), tokens));
+    }
+
+    @Benchmark
+    public void png(Blackhole blackhole) {
+        for (String dot : methodDots)
+            blackhole.consume(Graphviz.fromString(dot).render(Format.PNG).toImage());
+    }
+}
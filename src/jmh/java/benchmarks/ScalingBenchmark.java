@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+import java.util.concurrent.TimeUnit;
+
+// Parsing and CFG construction on generated sources of one shape, doubled from one scale to the next.
+// With linear behaviour the time doubles as well; anything faster growing shows up when the
+// results are plotted over scale.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalingBenchmark {
+
+    @Param({"statements", "nesting", "methods", "expression"})
+    public String shape;
+
+    @Param({"1", "2", "4", "8"})
+    public int scale;
+
+    private String source;
+    private CommonTokenStream tokens;
+    private ParserRuleContext tree;
+
+    @Setup
+    public void setUp() {
+        source = Fixtures.scaled(shape, scale);
+        tree = parse();
+    }
+
+    private ParserRuleContext parse() {
+        tokens = new CommonTokenStream(new Java8Lexer(new ANTLRInputStream(source)));
+        Java8Parser parser = new Java8Parser(tokens);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        return parser.compilationUnit();
+    }
+
+    @Benchmark
+    public ParserRuleContext lexAndParse() {
+        return parse();
+    }
+
+    @Benchmark
+    public String cfg() {
+        return Pipeline.dot(Pipeline.cfg(tree, tokens));
+    }
+}
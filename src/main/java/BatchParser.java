@@ -0,0 +1,266 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Parses many files and builds their CFGs on a fixed pool of threads.
+// All workers share the ATN and DFA cache that Java8Parser keeps in static fields,
+// so the grammar is deserialized once per JVM and warmed up by every file.
+public class BatchParser {
+
+    public static class Result {
+        private final File source;
+        private final Parser.Stage stage;
+        private final CFG cfg;
+        private final Throwable error;
+        private final long millis;
+        // DOT text of the file until it is written out, only set when writing DOT
+        private String dot;
+        private boolean unchanged = false;
+        private List<MethodMetrics> metrics = Collections.emptyList();
+
+        private Result(File source, Parser.Stage stage, CFG cfg, Throwable error, long millis) {
+            this.source = source;
+            this.stage = stage;
+            this.cfg = cfg;
+            this.error = error;
+            this.millis = millis;
+        }
+
+        public File getSource() {
+            return source;
+        }
+
+        public Parser.Stage getStage() {
+            return stage;
+        }
+
+        public CFG getCFG() {
+            return cfg;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        // the file was the same as in the last incremental run and its stored graph was used
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        // the metrics of every method of the file, only when counting metrics
+        public List<MethodMetrics> getMetrics() {
+            return metrics;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null)
+                return String.format("%s: failed after %d ms: %s", source, millis, error);
+            if (unchanged)
+                return String.format("%s: unchanged, %d ms", source, millis);
+            return String.format("%s: %s stage, %d ms", source, stage, millis);
+        }
+    }
+
+    private final int threads;
+    private boolean twoStage = true;
+    private long stackSize = 0;
+    private Writer dotOut;
+    private IncrementalIndex index;
+    private boolean buildTree = true;
+    private boolean coalesce = true;
+    private boolean metrics = false;
+
+    public BatchParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchParser(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.threads = threads;
+    }
+
+    public void setTwoStage(boolean twoStage) {
+        this.twoStage = twoStage;
+    }
+
+    // see Parser.setBuildTree(), without a tree every file goes the DOT way and results carry no CFG
+    public void setBuildTree(boolean buildTree) {
+        this.buildTree = buildTree;
+    }
+
+    // see Parser.setCoalesce(), for the DOT and incremental output
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    // count the metrics of every method instead of building graphs, results carry the metrics and no CFG.
+    // Neither DOT nor the incremental index is written then
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    // stack size of the worker threads in bytes, 0 for the JVM default, Main's --stack-size.
+    // CFG construction itself no longer recurses, only Java8Parser descends recursively into nested
+    // blocks and parentheses, so this is the one knob left for those sources instead of a global -Xss
+    public void setStackSize(long stackSize) {
+        this.stackSize = stackSize;
+    }
+
+    // write the graphs as DOT to the writer instead of keeping a CFG per file in the results.
+    // Every file is one digraph, written in the order of the results as soon as it is done,
+    // so memory holds the graphs of at most two files per thread and not of the whole batch
+    public void setDotWriter(Writer out) {
+        this.dotOut = out;
+    }
+
+    // only files that changed since the last run with the same index are parsed,
+    // the graphs of the others come from the index. Graphs are DOT text, results carry no CFG
+    public void setIncremental(IncrementalIndex index) {
+        this.index = index;
+    }
+
+    public List<Result> parse(File... paths) {
+        return parse(Arrays.asList(paths));
+    }
+
+    // directories are searched recursively for .java files, results keep the order of the files
+    public List<Result> parse(List<File> paths) {
+        List<File> files = new ArrayList<>();
+        for (File path : paths) {
+            // a file named on its own is parsed or fails in its result, whatever its name or whether it exists
+            if (path.isDirectory())
+                collect(path, files);
+            else
+                files.add(path);
+        }
+
+        AtomicInteger workers = new AtomicInteger();
+        int poolSize = Math.min(threads, Math.max(1, files.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize,
+                task -> new Thread(null, task, "cfg-worker-" + workers.incrementAndGet(), stackSize));
+        try {
+            // files are handed to the pool as results are taken, at most two per thread ahead of the writer,
+            // so a slow file holds back the DOT text of a bounded number of others
+            int window = 2 * poolSize;
+            Deque<Future<Result>> futures = new ArrayDeque<>();
+            int submitted = 0;
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                while (submitted < files.size() && submitted < i + window) {
+                    File file = files.get(submitted++);
+                    futures.add(pool.submit(() -> parseFile(file)));
+                }
+                try {
+                    Result result = futures.poll().get();
+                    if (result.dot != null) {
+                        dotOut.write(result.dot);
+                        result.dot = null;
+                    }
+                    results.add(result);
+                } catch (ExecutionException e) {
+                    results.add(new Result(files.get(i), null, null, e.getCause(), 0));
+                }
+            }
+            if (dotOut != null)
+                dotOut.flush();
+            if (index != null)
+                index.save();
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("batch parsing interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result parseFile(File file) {
+        long start = System.nanoTime();
+        Parser parser = null;
+        try {
+            if (!file.isFile())
+                throw new FileNotFoundException(file + " doesn't exist");
+            if (!file.getName().endsWith(".java"))
+                throw new IllegalArgumentException(file + " is not a .java file");
+            parser = new Parser(file);
+            parser.setTwoStage(twoStage);
+            parser.setBuildTree(buildTree);
+            parser.setCoalesce(coalesce);
+            if (metrics) {
+                List<MethodMetrics> methods = new ArrayList<>();
+                parser.metrics(methods::add);
+                Result result = new Result(file, parser.getStage(), null, null, elapsed(start));
+                result.metrics = methods;
+                return result;
+            }
+            String hash = null;
+            if (index != null) {
+                // a graph stored with the other granularity doesn't count as unchanged
+                hash = IncrementalIndex.hash(file) + (coalesce ? "" : "/statements");
+                String stored = index.get(file, hash);
+                if (stored != null) {
+                    Result result = new Result(file, null, null, null, elapsed(start));
+                    result.unchanged = true;
+                    result.dot = dotOut != null ? stored : null;
+                    return result;
+                }
+            }
+            if (dotOut != null || index != null || !buildTree) {
+                StringWriter dot = new StringWriter();
+                parser.writeDot(new DotWriter(dot));
+                if (index != null)
+                    index.put(file, hash, dot.toString());
+                Result result = new Result(file, parser.getStage(), null, null, elapsed(start));
+                result.dot = dotOut != null ? dot.toString() : null;
+                return result;
+            }
+            CFG cfg = parser.buildCFG();
+            return new Result(file, parser.getStage(), cfg, null, elapsed(start));
+        } catch (Exception | StackOverflowError e) {
+            return new Result(file, parser == null ? null : parser.getStage(), null, e, elapsed(start));
+        }
+    }
+
+    private static long elapsed(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void collect(File path, List<File> files) {
+        if (path.isDirectory()) {
+            File[] children = path.listFiles();
+            if (children == null)
+                return;
+            Arrays.sort(children);
+            for (File child : children)
+                collect(child, files);
+        } else if (path.getName().endsWith(".java")) {
+            files.add(path);
+        }
+    }
+}
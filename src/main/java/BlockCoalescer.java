@@ -0,0 +1,104 @@
+// Merges runs of statements into basic blocks before the graph goes on to the next sink:
+// a statement whose only way in is from a statement that goes nowhere else joins that statement's
+// block, and the block becomes one node with a line of label per statement.
+// A method is held until it ends. The next sink gets it with node ids of its own, counted from 0 for the first
+// method and on from there for the next ones, so they are unique across methods as GraphSink wants.
+public class BlockCoalescer implements GraphSink {
+
+    private final GraphSink sink;
+    private FlowGraphSink method;
+    private int counter = 0;
+
+    public BlockCoalescer(GraphSink sink) {
+        this.sink = sink;
+    }
+
+    public GraphSink getSink() {
+        return sink;
+    }
+
+    @Override
+    public void beginMethod(CharSequence label) {
+        method = new FlowGraphSink();
+        method.beginMethod(label);
+    }
+
+    @Override
+    public void node(int id, CharSequence label, NodeKind kind) {
+        method.node(id, label, kind);
+    }
+
+    @Override
+    public void edge(int from, int to, EdgeKind kind) {
+        method.edge(from, to, kind);
+    }
+
+    @Override
+    public void endMethod() {
+        FlowGraph graph = method.getGraph();
+        method = null;
+        int count = graph.getNodeCount();
+        // first node of the block every node is in, and the id of the block in the next sink
+        int[] blocks = new int[count];
+        int[] ids = new int[count];
+        for (int n = 0; n < count; n++) {
+            blocks[n] = n;
+            if (graph.getKind(n) != NodeKind.STATEMENT || graph.predecessorEnd(n) - graph.predecessorStart(n) != 1)
+                continue;
+            int edge = graph.predecessorStart(n);
+            int previous = graph.predecessor(edge);
+            if (previous < n && graph.getKind(previous) == NodeKind.STATEMENT
+                    && graph.predecessorKind(edge) == EdgeKind.NORMAL
+                    && graph.successorEnd(previous) - graph.successorStart(previous) == 1)
+                blocks[n] = blocks[previous];
+        }
+        graph.export(new GraphSink() {
+            @Override
+            public void beginMethod(CharSequence label) {
+                sink.beginMethod(label);
+            }
+
+            @Override
+            public void node(int id, CharSequence label, NodeKind kind) {
+                if (blocks[id] != id)
+                    return;
+                ids[id] = counter++;
+                sink.node(ids[id], label(graph, blocks, id), kind);
+            }
+
+            @Override
+            public void edge(int from, int to, EdgeKind kind) {
+                // the edges inside a block are the only ones into its later statements
+                if (blocks[to] == to)
+                    sink.edge(ids[blocks[from]], ids[to], kind);
+            }
+
+            @Override
+            public void endMethod() {
+                sink.endMethod();
+            }
+        });
+    }
+
+    // the labels of the statements of the block, one per line
+    private static CharSequence label(FlowGraph graph, int[] blocks, int first) {
+        int n = first;
+        if (!next(graph, blocks, n))
+            return graph.getLabel(n);
+        StringBuilder label = new StringBuilder();
+        label.append(graph.getLabel(n));
+        while (next(graph, blocks, n)) {
+            n = graph.successor(graph.successorStart(n));
+            label.append('\n').append(graph.getLabel(n));
+        }
+        return label.toString();
+    }
+
+    private static boolean next(FlowGraph graph, int[] blocks, int n) {
+        int start = graph.successorStart(n);
+        if (graph.successorEnd(n) - start != 1)
+            return false;
+        int successor = graph.successor(start);
+        return successor > n && blocks[successor] == blocks[n];
+    }
+}
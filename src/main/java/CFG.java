@@ -1,93 +1,91 @@
 
-import guru.nidi.graphviz.attribute.*;
-import guru.nidi.graphviz.engine.Format;
-import guru.nidi.graphviz.engine.Graphviz;
-import guru.nidi.graphviz.model.Graph;
-import guru.nidi.graphviz.model.MutableGraph;
-import guru.nidi.graphviz.model.MutableNode;
-import guru.nidi.graphviz.model.Node;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
-
-import static guru.nidi.graphviz.model.Factory.*;
+import parsers.Java8Parser;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 public class CFG {
 
-    private static int counter = 0;
-    private final Object payload;
-    public MutableNode node;
-    private final List<CFG> children;
-    public List<CFG> lastRoutes = new ArrayList<>();
-    public boolean returnStatement = false;
-    public boolean conditionStatement = false;
-    public boolean unclosedConditionStatement = false;
-
-    public CFG(ParseTree tree) {
-        this(null, tree);
-    }
+    private static final int NONE = SyntaxTree.NONE;
+    private final SyntaxTree tree;
+    private final int index;
+    private int[] children;
+    // a wrapper per child once it has been asked for, the same one every time after that
+    private CFG[] childCFGs;
+    private List<CFG> childList;
 
-    private CFG(CFG ast, ParseTree tree) {
-        this(ast, tree, new ArrayList<CFG>());
+    public CFG(ParseTree tree, TokenStream tokens) {
+        this(new SyntaxTree(tree, tokens), 0);
     }
 
-    private CFG(CFG parent, ParseTree tree, List<CFG> children) {
-
-        this.payload = getPayload(tree);
-        this.children = children;
-        if (payload instanceof Token)
-            node = mutNode(((Token) payload).getText());
-        else
-            node = mutNode(String.valueOf(payload));
+    private CFG(SyntaxTree tree, int index) {
+        this.tree = tree;
+        this.index = index;
+    }
 
-        if (parent == null) {
-            walk(tree, this);
-        } else {
-            parent.children.add(this);
-        }
+    public SyntaxTree getTree() {
+        return tree;
     }
 
     public Object getPayload() {
-        return payload;
+        return payload(index);
     }
 
-    public List<CFG> getChildren() {
-        return new ArrayList<>(children);
+    // the syntax tree node this CFG stands for, children can be walked with
+    // getTree().firstChild()/nextSibling() without creating any objects
+    public int getNode() {
+        return index;
     }
 
-    private Object getPayload(ParseTree tree) {
-        if (tree.getChildCount() == 0) {
-            return tree.getPayload();
-        } else {
-            String ruleName = tree.getClass().getSimpleName().replace("Context", "");
-            return Character.toLowerCase(ruleName.charAt(0)) + ruleName.substring(1);
-        }
+    public int getChildCount() {
+        return childIndexes().length;
     }
 
-    private static void walk(ParseTree tree, CFG ast) {
-
-        if (tree.getChildCount() == 0) {
-            new CFG(ast, tree);
-        } else if (tree.getChildCount() == 1) {
-            walk(tree.getChild(0), ast);
-        } else if (tree.getChildCount() > 1) {
-
-            for (int i = 0; i < tree.getChildCount(); i++) {
+    public CFG getChild(int i) {
+        int[] nodes = childIndexes();
+        if (childCFGs == null)
+            childCFGs = new CFG[nodes.length];
+        if (childCFGs[i] == null)
+            childCFGs[i] = new CFG(tree, nodes[i]);
+        return childCFGs[i];
+    }
 
-                CFG temp = new CFG(ast, tree.getChild(i));
+    // unmodifiable view, created once per CFG
+    public List<CFG> getChildren() {
+        if (childList == null) {
+            childList = new AbstractList<CFG>() {
+                @Override
+                public CFG get(int i) {
+                    return getChild(i);
+                }
 
-                if (!(temp.payload instanceof Token)) {
-                    walk(tree.getChild(i), temp);
+                @Override
+                public int size() {
+                    return getChildCount();
                 }
+            };
+        }
+        return childList;
+    }
 
-            }
+    private int[] childIndexes() {
+        if (children == null) {
+            children = new int[tree.childCount(index)];
+            int i = 0;
+            for (int n = tree.firstChild(index); n != NONE; n = tree.nextSibling(n))
+                children[i++] = n;
         }
+        return children;
+    }
+
+    private Object payload(int node) {
+        return tree.isToken(node) ? tree.token(node) : tree.ruleName(node);
     }
 
     @Override
@@ -95,47 +93,36 @@ public class CFG {
 
         StringBuilder builder = new StringBuilder();
 
-        CFG ast = this;
-        List<CFG> firstStack = new ArrayList<>();
-        firstStack.add(ast);
-        List<List<CFG>> childListStack = new ArrayList<>();
-        childListStack.add(firstStack);
+        // next node to print on every level of the current path, NONE once a level is done
+        int[] stack = new int[32];
+        int depth = 0;
+        stack[0] = index;
 
-        while (!childListStack.isEmpty()) {
+        while (depth >= 0) {
+            int ast = stack[depth];
+            if (ast == NONE) {
+                depth--;
+                continue;
+            }
+            stack[depth] = depth == 0 ? NONE : tree.nextSibling(ast);
 
-            List<CFG> childStack = childListStack.get(childListStack.size() - 1);
+            for (int i = 0; i < depth; i++) {
+                builder.append(stack[i] != NONE ? "|  " : "   ");
+            }
+            builder.append(stack[depth] == NONE ? "'- " : "|- ");
 
-            if (childStack.isEmpty()) {
-                childListStack.remove(childListStack.size() - 1);
+            if (tree.isToken(ast)) {
+                Token token = tree.token(ast);
+                builder.append("TOKEN[").append(token.getText().replace("\n", "\\n")).append("]");
             } else {
-                ast = childStack.remove(0);
-                String caption;
-
-                if (ast.payload instanceof Token) {
-                    Token token = (Token) ast.payload;
-                    caption = String.format("TOKEN[%s]", token.getText().replace("\n", "\\n"));
-                } else {
-                    caption = String.valueOf(ast.payload);// + " " + ast.payload.getClass().getName();
-                }
-
-                String indent = "";
-
-                for (int i = 0; i < childListStack.size() - 1; i++) {
-                    indent += (childListStack.get(i).size() > 0) ? "|  " : "   ";
-                }
-
-                builder.append(indent)
-                        .append(childStack.isEmpty() ? "'- " : "|- ")
-                        .append(caption)
-                        .append("\n");
+                builder.append(tree.ruleName(ast));
+            }
+            builder.append("\n");
 
-                if (ast.children.size() > 0) {
-                    List<CFG> children = new ArrayList<>();
-                    for (int i = 0; i < ast.children.size(); i++) {
-                        children.add(ast.children.get(i));
-                    }
-                    childListStack.add(children);
-                }
+            if (tree.firstChild(ast) != NONE) {
+                if (++depth == stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[depth] = tree.firstChild(ast);
             }
         }
 
@@ -143,265 +130,273 @@ public class CFG {
     }
 
     public void toScheme() {
-        MutableGraph g = mutGraph("CFGscheme").setDirected(true);
-        CFG ast = this;
-        handle(ast, g);
-        try {
-            Graphviz.fromGraph(g).width(9000).render(Format.PNG).toFile(new File("scheme/scheme.png"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        toScheme(new File("scheme"));
     }
 
-    private void handle(CFG node, MutableGraph g) {
-        for (CFG n : node.getChildren()) {
-            if (n.payload instanceof String && n.payload.equals("classBodyDeclaration")) {
-                handleMethodDeclaration(n, g, node);
-                continue;
-            }
-            handle(n, g);
-        }
+    // one image per method in dir
+    public void toScheme(File dir) {
+        toScheme(new SchemeRenderer(), dir);
     }
 
-    private String extractStatementText(CFG block, MutableGraph g) {
-        StringJoiner result = new StringJoiner(" ");
-        for (CFG n : block.getChildren()) {
-            if (n.payload instanceof Token) {
-                String token = ((Token) n.payload).getText();
-                if (!token.equals(";"))
-                    result.add(((Token) n.payload).getText());
-            } else {
-                result.add(extractStatementText(n, g));
-            }
-        }
-        return result.toString();
+    public void toScheme(SchemeRenderer renderer, File dir) {
+        toScheme(renderer, dir, true);
     }
 
-    private CFG handleBlockStatements(CFG block, MutableGraph g, CFG parent, boolean connectFirstDashed) {
-
-        CFG lastNode = parent;
-        boolean first = true;
-        for (CFG n : block.getChildren()) {
-            if (n.payload instanceof Token && ((Token) n.payload).getText().equals("return")) {
-                String name = extractStatementText(block, g);
-                block.node = mutNode(generateName()).add(Label.of(name.toString())).add(Shape.ELLIPSE);
-                block.returnStatement = true;
-                if (first && connectFirstDashed)
-                    parent.node.addLink(parent.node.linkTo(block.node).with(Style.DASHED));
-                else
-                    parent.node.addLink(parent.node.linkTo(block.node));
-                g.add(parent.node);
-                break;
-            }
-            if (n.payload.equals("blockStatement") || n.payload.equals("statementExpression")) {
-                if (lastNode.lastRoutes.size() > 1) {
-                    handleBlockStatement(n, g, null, false);
-                    for (CFG l : lastNode.lastRoutes)
-                        if (!l.returnStatement)
-                            g.add(l.node.addLink(n.node));
-                } else if (lastNode.lastRoutes.size() == 1) {
-                    handleBlockStatement(n, g, lastNode, false);
-                    for (CFG l : lastNode.lastRoutes)
-                        if (!l.returnStatement)
-                            g.add(l.node.addLink(n.node));
-                } else {
-                    if (first && connectFirstDashed)
-                        handleBlockStatement(n, g, lastNode, true);
-                    else
-                        handleBlockStatement(n, g, lastNode, false);
-                }
+    // coalesce draws a node per basic block, otherwise every statement is a node of its own
+    public void toScheme(SchemeRenderer renderer, File dir, boolean coalesce) {
+        MethodGraphs graphs = new MethodGraphs();
+        toFlowGraph(coalesce).export(graphs);
+        renderer.render(graphs.getMethods(), dir);
+    }
 
-                lastNode = n;
-            }
-            first = false;
-        }
-        return lastNode;
+    // a node per statement
+    public FlowGraph toFlowGraph() {
+        return toFlowGraph(false);
     }
 
-    private void handleBlockStatement(CFG block, MutableGraph g, CFG parent, boolean connectDashed) {
+    public FlowGraph toFlowGraph(boolean coalesce) {
+        FlowGraphSink sink = new FlowGraphSink();
+        handle(new FlowGraphBuilder(coalesce ? new BlockCoalescer(sink) : sink));
+        return sink.getGraph();
+    }
 
-        for (CFG n : block.getChildren()) {
-            if (n.payload instanceof Token) {
-                if (((Token) n.payload).getText().equals("for")) {
-                    handleLoopDeclaration(block, g, parent);
-                    break;
-                }
-                if (((Token) n.payload).getText().equals("if")) {
-                    handleConditionDeclaration(block, g, parent);
-                    break;
+    // one MethodMetrics per method, counted on the way through the tree without building a graph
+    public void metrics(Consumer<MethodMetrics> out) {
+        handle(new FlowGraphBuilder(null, out));
+    }
+
+    // visits the tree in document order with an explicit stack and hands every method to the builder,
+    // those of nested, local, anonymous and enum constant classes and of interfaces too, as CFGListener does.
+    // The bodies of methods are only looked at by the handlers, classes in there are part of a statement
+    public void handle(FlowGraphBuilder builder) {
+        int[] stack = new int[32];
+        int depth = 0;
+        stack[0] = tree.firstChild(index);
+        work = new int[64];
+        try {
+            while (depth >= 0) {
+                int n = stack[depth];
+                if (n == NONE) {
+                    depth--;
+                    continue;
                 }
-                if (((Token) n.payload).getText().equals("return")) {
-                    String name = extractStatementText(block, g);
-                    block.returnStatement = true;
-                    block.node = mutNode(generateName()).add(Label.of(name.toString())).add(Shape.ELLIPSE);
-                    g.add(parent.node.addLink(block.node));
-                    break;
+                stack[depth] = tree.nextSibling(n);
+                if (isMethodDeclaration(n)) {
+                    handleMethodDeclaration(n, builder);
+                    continue;
                 }
-            } else {
-                String res = extractStatementText(block, g);
-                System.out.println(res);
-
-                block.node = mutNode(generateName()).add(Label.of(res));
-                block.node.add(Shape.RECTANGLE);
-                if (parent != null) {
-                    if (connectDashed)
-                        parent.node.addLink(parent.node.linkTo(block.node).with(Style.DASHED));
-                    else
-                        parent.node.addLink(parent.node.linkTo(block.node));
-                    g.add(parent.node);
+                if (tree.firstChild(n) != NONE) {
+                    if (++depth == stack.length)
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[depth] = tree.firstChild(n);
                 }
-                break;
             }
+        } finally {
+            work = null;
         }
     }
 
-    private void handleMethodDeclaration(CFG method, MutableGraph g, CFG parent) {
-        StringJoiner result = new StringJoiner(" ");
-        //  g.add(parent.node.addLink(method.node));
-        CFG body = null;
-        for (CFG n : method.getChildren()) {
-            if (n.payload instanceof String && n.payload.equals("methodModifier")) {
-                result.add(extractStatementText(n, g));
-                continue;
-            }
-            if (n.payload instanceof String && n.payload.equals("methodHeader")) {
-                result.add(extractStatementText(n, g));
-                continue;
-            }
-            if (n.payload instanceof String && n.payload.equals("methodBody")) {
-                body = n;
-                continue;
-            }
+    // the rule of a method, constructor or interface method is collapsed into the member declaration
+    // above it, so it is told by its header
+    private boolean isMethodDeclaration(int node) {
+        for (int n = tree.firstChild(node); n != NONE; n = tree.nextSibling(n)) {
+            int rule = tree.ruleIndex(n);
+            if (rule == Java8Parser.RULE_methodHeader || rule == Java8Parser.RULE_constructorDeclarator)
+                return true;
         }
-        method.node = mutNode(generateName()).add(Label.of(result.toString())).add(Shape.ELLIPSE);
-        g.add(method.node);
+        return false;
+    }
 
-        for (CFG n : body.getChildren()) {
-            if (n.payload instanceof String && n.payload.equals("blockStatements")) {
-                handleBlockStatements(n, g, method, false);
+    private void handleMethodDeclaration(int method, FlowGraphBuilder builder) {
+        int header = NONE;
+        int body = NONE;
+        for (int n = tree.firstChild(method); n != NONE; n = tree.nextSibling(n)) {
+            switch (tree.ruleIndex(n)) {
+                case Java8Parser.RULE_methodHeader:
+                case Java8Parser.RULE_constructorDeclarator:
+                    header = n;
+                    break;
+                case Java8Parser.RULE_methodBody:
+                case Java8Parser.RULE_constructorBody:
+                    body = n;
+                    break;
             }
         }
+        if (header == NONE || body == NONE)
+            return;
+        // modifiers, header and the throws clause, which a constructor has outside its declarator
+        builder.beginMethod(new TokenLabel(tree.getTokens(), tree.tokenIndex(method), tree.tokenIndex(body) - 1));
+        workSize = 0;
+        pushBody(body);
+        handleStatements(builder);
+        builder.endMethod();
     }
 
-    private void handleLoopDeclaration(CFG block, MutableGraph g, CFG parent) {
-        //  StringJoiner forName = new StringJoiner("; ");
-        MutableNode init = null;
-        MutableNode expression = null;
-        MutableNode update = null;
-        CFG body = null;
-        for (CFG n : block.getChildren()) {
-            if (n.payload instanceof String && n.payload.equals("forInit")) {
-                init = mutNode(generateName()).add(Label.of(extractStatementText(n, g)));
-                init.add(Shape.RECTANGLE);
-            }
-            if (n.payload instanceof String && n.payload.equals("expression")) {
-                expression = mutNode(generateName()).add(Label.of(extractStatementText(n, g)));
-                expression.add(Shape.DIAMOND);
-            }
-//            if (n.payload instanceof String && !n.payload.equals("statement")) {
-//                forName.add(extractStatementText(n, g));
-//            }
-            if (n.payload instanceof String && n.payload.equals("forUpdate")) {
-                update = mutNode(generateName()).add(Label.of(extractStatementText(n, g)));
-                update.add(Shape.RECTANGLE);
-            }
-            if (n.payload instanceof String && n.payload.equals("statement")) {
-                for (CFG e : n.getChildren()) {
-                    System.out.println(e.payload);
-                    if (e.payload instanceof String && e.payload.equals("blockStatements")) {
-                        body = e;
+    // work items of the handlers, kept on an explicit stack as pairs of operation and node
+    // so that nesting depth costs two ints instead of Java stack frames
+    private static final int STATEMENTS = 0;    // node is the next blockStatement of a list, or NONE
+    private static final int STATEMENT = 1;     // node is a single statement
+    private static final int ELSE = 2;          // node is the statement of the false branch
+    private static final int END_CONDITION = 3;
+    private static final int END_LOOP = 4;
+
+    private int[] work;
+    private int workSize;
+
+    private void push(int op, int node) {
+        if (workSize + 2 > work.length)
+            work = Arrays.copyOf(work, work.length * 2);
+        work[workSize++] = op;
+        work[workSize++] = node;
+    }
+
+    private void handleStatements(FlowGraphBuilder builder) {
+        while (workSize > 0) {
+            int node = work[--workSize];
+            int op = work[--workSize];
+            switch (op) {
+                case STATEMENTS:
+                    if (node != NONE) {
+                        push(STATEMENTS, tree.nextSibling(node));
+                        handleBlockStatement(node, builder);
                     }
-                }
+                    break;
+                case STATEMENT:
+                    handleBlockStatement(node, builder);
+                    break;
+                case ELSE:
+                    builder.elseBranch();
+                    pushBody(node);
+                    break;
+                case END_CONDITION:
+                    builder.endCondition();
+                    break;
+                case END_LOOP:
+                    builder.endLoop();
+                    break;
             }
         }
-        //   block.node = init;
-
-        g.add(init.addLink(expression));
-        g.add(expression.addLink(update));
-        block.node = update;
-
-        MutableNode exit = mutNode(generateName()).add(Label.of("")).add(Shape.POINT);
-        CFG lastNode = handleBlockStatements(body, g, block, false);
-        expression.addLink(expression.linkTo(exit).with(Style.DASHED));
-        block.node = exit;
-        g.add(parent.node.addLink(init));
-        g.add(lastNode.node.addLink(expression));
-
-//        System.out.println(forName.toString());
-//        block.node = mutNode(generateName()).add(Label.of(forName.toString())).add(Shape.HEXAGON);
-//        g.add(parent.node.addLink(block.node));
-
-//        g.add(lastNode.node.addLink(block.node));
-
     }
 
-    private void handleConditionDeclaration(CFG block, MutableGraph g, CFG parent) {
-        block.conditionStatement = true;
-        StringJoiner forName = new StringJoiner("");
-        CFG bodyTrue = null;
-        CFG bodyFalse = null;
-        boolean shortIF = true;
-        for (CFG n : block.getChildren()) {
-            if (n.payload instanceof String && n.payload.equals("expression")) {
-                forName.add(extractStatementText(n, g));
-                continue;
-            }
-            if (n.payload instanceof String && n.payload.equals("statementNoShortIf")) {
-                shortIF = false;
-                for (CFG e : n.getChildren()) {
-                    if (e.payload instanceof String && e.payload.equals("blockStatements")) {
-                        bodyTrue = e;
-                    }
-                }
+    // a body is a block or a method body with its braces, or a single statement
+    private void pushBody(int body) {
+        if (body == NONE || tree.firstChild(body) == NONE)
+            return;
+        if (tree.tokenType(tree.firstChild(body)) != Java8Parser.LBRACE) {
+            push(STATEMENT, body);
+            return;
+        }
+        for (int n = tree.firstChild(body); n != NONE; n = tree.nextSibling(n)) {
+            if (tree.ruleIndex(n) == Java8Parser.RULE_blockStatements) {
+                // a list of one statement is collapsed into that statement
+                if (tree.ruleIndex(tree.firstChild(n)) == Java8Parser.RULE_blockStatement)
+                    push(STATEMENTS, tree.firstChild(n));
+                else
+                    push(STATEMENT, n);
             }
-            if (n.payload instanceof String && n.payload.equals("statement")) {
-                for (CFG e : n.getChildren()) {
-                    if (e.payload instanceof String && e.payload.equals("blockStatements")) {
-                        if (shortIF) {
-                            bodyTrue = e;
-                        } else {
-                            bodyFalse = e;
-                        }
-                    }
+        }
+    }
+
+    private void handleBlockStatement(int block, FlowGraphBuilder builder) {
+
+        for (int n = tree.firstChild(block); n != NONE; n = tree.nextSibling(n)) {
+            if (tree.isToken(n)) {
+                switch (tree.tokenType(n)) {
+                    case Java8Parser.FOR:
+                        handleLoopDeclaration(block, builder);
+                        return;
+                    case Java8Parser.IF:
+                        handleConditionDeclaration(block, builder);
+                        return;
+                    case Java8Parser.RETURN:
+                        builder.returnStatement(tree.label(block));
+                        return;
+                    case Java8Parser.LBRACE:
+                        // a block inside the body, its statements are those of the body
+                        pushBody(block);
+                        return;
+                    case Java8Parser.BREAK:
+                        builder.breakStatement(tree.label(block));
+                        return;
+                    case Java8Parser.CONTINUE:
+                        builder.continueStatement(tree.label(block));
+                        return;
                 }
+            } else {
+                builder.statement(tree.label(block));
+                return;
             }
         }
+    }
 
-        block.node = mutNode(generateName()).add(Label.of(forName.toString())).add(Shape.DIAMOND);
-        if (parent != null)
-            g.add(parent.node.addLink(block.node));
-        CFG trueRoute = handleBlockStatements(bodyTrue, g, block, false);
-        CFG falseRoute = null;
-        if (!shortIF) {
-            falseRoute = handleBlockStatements(bodyFalse, g, block, true);
+    private void handleLoopDeclaration(int block, FlowGraphBuilder builder) {
+        TokenLabel init = null;
+        TokenLabel expression = null;
+        TokenLabel update = null;
+        int open = NONE;
+        boolean enhanced = false;
+        int body = NONE;
+        for (int n = tree.firstChild(block); n != NONE; n = tree.nextSibling(n)) {
+            switch (tree.ruleIndex(n)) {
+                case Java8Parser.RULE_forInit:
+                    init = tree.label(n);
+                    break;
+                case Java8Parser.RULE_expression:
+                    // for (Type name : expression) is labelled with everything inside the parentheses
+                    if (enhanced)
+                        expression = new TokenLabel(tree.getTokens(), tree.tokenIndex(open) + 1, tree.stopIndex(n));
+                    else
+                        expression = tree.label(n);
+                    break;
+                case Java8Parser.RULE_forUpdate:
+                    update = tree.label(n);
+                    break;
+                case Java8Parser.RULE_statement:
+                case Java8Parser.RULE_statementNoShortIf:
+                    body = n;
+                    break;
+                case NONE:
+                    if (tree.tokenType(n) == Java8Parser.LPAREN && open == NONE)
+                        open = n;
+                    if (tree.tokenType(n) == Java8Parser.COLON)
+                        enhanced = true;
+                    break;
+            }
         }
-        List<CFG> routes = new ArrayList<>();
-        MutableNode end = mutNode(generateName()).add(Label.of("")).add(Shape.POINT);
 
-        if (!trueRoute.returnStatement)
-            g.add(trueRoute.node.addLink(end));
+        builder.beginLoop(init, expression, update);
+        push(END_LOOP, NONE);
+        pushBody(body);
+    }
 
-        if (!shortIF) {
-            if (!falseRoute.returnStatement) {
-                falseRoute.node.addLink(falseRoute.node.linkTo(end));
-                g.add(falseRoute.node);
+    private void handleConditionDeclaration(int block, FlowGraphBuilder builder) {
+        TokenLabel condition = null;
+        int bodyTrue = NONE;
+        int bodyFalse = NONE;
+        boolean shortIF = true;
+        for (int n = tree.firstChild(block); n != NONE; n = tree.nextSibling(n)) {
+            switch (tree.ruleIndex(n)) {
+                case Java8Parser.RULE_expression:
+                    condition = tree.label(n);
+                    break;
+                case Java8Parser.RULE_statement:
+                case Java8Parser.RULE_statementNoShortIf:
+                    if (shortIF)
+                        bodyTrue = n;
+                    else
+                        bodyFalse = n;
+                    break;
+                case NONE:
+                    if (tree.tokenType(n) == Java8Parser.ELSE)
+                        shortIF = false;
+                    break;
             }
-//            if (bodyFalse!=null) {
-//                block.node.addLink(block.node.linkTo(bodyFalse.node).with(Style.DASHED));
-//                g.add(block.node);
-//            }
-        } else {
-            block.node.addLink(block.node.linkTo(end).with(Style.DASHED));
-            g.add(block.node);
         }
 
-        block.node = end;
-        block.lastRoutes = routes;
-        // handle(block, g);
-    }
-
-    private String generateName() {
-        return String.format("%s", counter++);
+        builder.beginCondition(condition);
+        push(END_CONDITION, NONE);
+        if (!shortIF)
+            push(ELSE, bodyFalse);
+        pushBody(bodyTrue);
     }
 }
-
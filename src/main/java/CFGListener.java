@@ -0,0 +1,393 @@
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import parsers.Java8BaseListener;
+import parsers.Java8Parser;
+
+// Single pass CFG construction straight from Java8Parser rule events, without the CFG tree copy.
+// Only enter/exit events and the start/stop tokens of contexts are used, children are never looked at.
+// Statements the graph has no structure for (while, switch, try, ...) become one node with their whole text,
+// lambda bodies and classes inside a method are not followed. Methods of nested, anonymous and enum constant
+// classes and of interfaces are methods of their own. CFG.handle() draws the same graph from a SyntaxTree.
+public class CFGListener extends Java8BaseListener {
+
+    private final TokenStream tokens;
+    private final FlowGraphBuilder builder;
+    private int suppressed = 0;
+    private TokenLabel loopInit;
+    private TokenLabel loopCondition;
+    private TokenLabel loopUpdate;
+
+    public CFGListener(TokenStream tokens, FlowGraphBuilder builder) {
+        this.tokens = tokens;
+        this.builder = builder;
+    }
+
+    public static FlowGraphBuilder build(ParseTree tree, TokenStream tokens, GraphSink sink) {
+        FlowGraphBuilder builder = new FlowGraphBuilder(sink);
+        IterativeParseTreeWalker.DEFAULT.walk(new CFGListener(tokens, builder), tree);
+        return builder;
+    }
+
+    private boolean active() {
+        return suppressed == 0 && builder.isInMethod();
+    }
+
+    private TokenLabel label(int start, int stop) {
+        return new TokenLabel(tokens, start, stop);
+    }
+
+    private TokenLabel label(ParserRuleContext ctx) {
+        return label(ctx.getStart().getTokenIndex(), ctx.getStop().getTokenIndex());
+    }
+
+    // methods and constructors
+
+    @Override
+    public void exitMethodHeader(Java8Parser.MethodHeaderContext ctx) {
+        if (suppressed == 0)
+            builder.beginMethod(label(ctx.getParent().getStart().getTokenIndex(), ctx.getStop().getTokenIndex()));
+    }
+
+    // the throws clause of a constructor comes after its declarator, the header ends where the body starts.
+    // A body parsed on its own by LazyParser has no declaration around it
+    @Override
+    public void enterConstructorBody(Java8Parser.ConstructorBodyContext ctx) {
+        if (suppressed == 0 && ctx.getParent() instanceof Java8Parser.ConstructorDeclarationContext)
+            builder.beginMethod(label(ctx.getParent().getStart().getTokenIndex(), ctx.getStart().getTokenIndex() - 1));
+    }
+
+    @Override
+    public void exitMethodDeclaration(Java8Parser.MethodDeclarationContext ctx) {
+        if (suppressed == 0)
+            builder.endMethod();
+    }
+
+    @Override
+    public void exitInterfaceMethodDeclaration(Java8Parser.InterfaceMethodDeclarationContext ctx) {
+        if (suppressed == 0)
+            builder.endMethod();
+    }
+
+    @Override
+    public void exitConstructorDeclaration(Java8Parser.ConstructorDeclarationContext ctx) {
+        if (suppressed == 0)
+            builder.endMethod();
+    }
+
+    // code inside a method that belongs to another body
+
+    @Override
+    public void enterClassBody(Java8Parser.ClassBodyContext ctx) {
+        if (builder.isInMethod())
+            suppressed++;
+    }
+
+    @Override
+    public void exitClassBody(Java8Parser.ClassBodyContext ctx) {
+        if (builder.isInMethod())
+            suppressed--;
+    }
+
+    @Override
+    public void enterLambdaBody(Java8Parser.LambdaBodyContext ctx) {
+        if (builder.isInMethod())
+            suppressed++;
+    }
+
+    @Override
+    public void exitLambdaBody(Java8Parser.LambdaBodyContext ctx) {
+        if (builder.isInMethod())
+            suppressed--;
+    }
+
+    // plain statements
+
+    @Override
+    public void exitLocalVariableDeclarationStatement(Java8Parser.LocalVariableDeclarationStatementContext ctx) {
+        if (active())
+            builder.statement(label(ctx));
+    }
+
+    @Override
+    public void exitExpressionStatement(Java8Parser.ExpressionStatementContext ctx) {
+        if (active())
+            builder.statement(label(ctx));
+    }
+
+    @Override
+    public void exitReturnStatement(Java8Parser.ReturnStatementContext ctx) {
+        if (active())
+            builder.returnStatement(label(ctx));
+    }
+
+    @Override
+    public void exitBreakStatement(Java8Parser.BreakStatementContext ctx) {
+        if (active())
+            builder.breakStatement(label(ctx));
+    }
+
+    @Override
+    public void exitContinueStatement(Java8Parser.ContinueStatementContext ctx) {
+        if (active())
+            builder.continueStatement(label(ctx));
+    }
+
+    // statements drawn as a single node
+
+    private void enterOpaque() {
+        if (builder.isInMethod())
+            suppressed++;
+    }
+
+    private void exitOpaque(ParserRuleContext ctx) {
+        if (!builder.isInMethod())
+            return;
+        suppressed--;
+        if (suppressed == 0)
+            builder.statement(label(ctx));
+    }
+
+    @Override
+    public void enterWhileStatement(Java8Parser.WhileStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitWhileStatement(Java8Parser.WhileStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterWhileStatementNoShortIf(Java8Parser.WhileStatementNoShortIfContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitWhileStatementNoShortIf(Java8Parser.WhileStatementNoShortIfContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterDoStatement(Java8Parser.DoStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitDoStatement(Java8Parser.DoStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterSwitchStatement(Java8Parser.SwitchStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitSwitchStatement(Java8Parser.SwitchStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterTryStatement(Java8Parser.TryStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitTryStatement(Java8Parser.TryStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterSynchronizedStatement(Java8Parser.SynchronizedStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitSynchronizedStatement(Java8Parser.SynchronizedStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterLabeledStatement(Java8Parser.LabeledStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitLabeledStatement(Java8Parser.LabeledStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterLabeledStatementNoShortIf(Java8Parser.LabeledStatementNoShortIfContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitLabeledStatementNoShortIf(Java8Parser.LabeledStatementNoShortIfContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterAssertStatement(Java8Parser.AssertStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitAssertStatement(Java8Parser.AssertStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterThrowStatement(Java8Parser.ThrowStatementContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitThrowStatement(Java8Parser.ThrowStatementContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    @Override
+    public void enterClassDeclaration(Java8Parser.ClassDeclarationContext ctx) {
+        enterOpaque();
+    }
+
+    @Override
+    public void exitClassDeclaration(Java8Parser.ClassDeclarationContext ctx) {
+        exitOpaque(ctx);
+    }
+
+    // conditions
+
+    @Override
+    public void exitExpression(Java8Parser.ExpressionContext ctx) {
+        if (!active())
+            return;
+        ParserRuleContext parent = ctx.getParent();
+        if (parent instanceof Java8Parser.IfThenStatementContext
+                || parent instanceof Java8Parser.IfThenElseStatementContext
+                || parent instanceof Java8Parser.IfThenElseStatementNoShortIfContext) {
+            builder.beginCondition(label(ctx));
+        } else if (parent instanceof Java8Parser.BasicForStatementContext
+                || parent instanceof Java8Parser.BasicForStatementNoShortIfContext) {
+            loopCondition = label(ctx);
+        } else if (parent instanceof Java8Parser.EnhancedForStatementContext
+                || parent instanceof Java8Parser.EnhancedForStatementNoShortIfContext) {
+            // everything between "for (" and ")"
+            loopCondition = label(parent.getStart().getTokenIndex() + 2, ctx.getStop().getTokenIndex());
+        }
+    }
+
+    @Override
+    public void exitStatementNoShortIf(Java8Parser.StatementNoShortIfContext ctx) {
+        ParserRuleContext parent = ctx.getParent();
+        if (active() && (parent instanceof Java8Parser.IfThenElseStatementContext
+                || parent instanceof Java8Parser.IfThenElseStatementNoShortIfContext))
+            builder.elseBranch();
+    }
+
+    @Override
+    public void exitIfThenStatement(Java8Parser.IfThenStatementContext ctx) {
+        if (active())
+            builder.endCondition();
+    }
+
+    @Override
+    public void exitIfThenElseStatement(Java8Parser.IfThenElseStatementContext ctx) {
+        if (active())
+            builder.endCondition();
+    }
+
+    @Override
+    public void exitIfThenElseStatementNoShortIf(Java8Parser.IfThenElseStatementNoShortIfContext ctx) {
+        if (active())
+            builder.endCondition();
+    }
+
+    // loops, the header is collected first and the loop opened when its body starts
+
+    private void resetLoopHeader() {
+        loopInit = null;
+        loopCondition = null;
+        loopUpdate = null;
+    }
+
+    private void enterLoopBody(ParserRuleContext body) {
+        ParserRuleContext parent = body.getParent();
+        if (active() && (parent instanceof Java8Parser.BasicForStatementContext
+                || parent instanceof Java8Parser.BasicForStatementNoShortIfContext
+                || parent instanceof Java8Parser.EnhancedForStatementContext
+                || parent instanceof Java8Parser.EnhancedForStatementNoShortIfContext)) {
+            builder.beginLoop(loopInit, loopCondition, loopUpdate);
+            resetLoopHeader();
+        }
+    }
+
+    private void exitLoop() {
+        if (active())
+            builder.endLoop();
+    }
+
+    @Override
+    public void enterBasicForStatement(Java8Parser.BasicForStatementContext ctx) {
+        resetLoopHeader();
+    }
+
+    @Override
+    public void enterBasicForStatementNoShortIf(Java8Parser.BasicForStatementNoShortIfContext ctx) {
+        resetLoopHeader();
+    }
+
+    @Override
+    public void enterEnhancedForStatement(Java8Parser.EnhancedForStatementContext ctx) {
+        resetLoopHeader();
+    }
+
+    @Override
+    public void enterEnhancedForStatementNoShortIf(Java8Parser.EnhancedForStatementNoShortIfContext ctx) {
+        resetLoopHeader();
+    }
+
+    @Override
+    public void exitForInit(Java8Parser.ForInitContext ctx) {
+        if (active())
+            loopInit = label(ctx);
+    }
+
+    @Override
+    public void exitForUpdate(Java8Parser.ForUpdateContext ctx) {
+        if (active())
+            loopUpdate = label(ctx);
+    }
+
+    @Override
+    public void enterStatement(Java8Parser.StatementContext ctx) {
+        enterLoopBody(ctx);
+    }
+
+    @Override
+    public void enterStatementNoShortIf(Java8Parser.StatementNoShortIfContext ctx) {
+        enterLoopBody(ctx);
+    }
+
+    @Override
+    public void exitBasicForStatement(Java8Parser.BasicForStatementContext ctx) {
+        exitLoop();
+    }
+
+    @Override
+    public void exitBasicForStatementNoShortIf(Java8Parser.BasicForStatementNoShortIfContext ctx) {
+        exitLoop();
+    }
+
+    @Override
+    public void exitEnhancedForStatement(Java8Parser.EnhancedForStatementContext ctx) {
+        exitLoop();
+    }
+
+    @Override
+    public void exitEnhancedForStatementNoShortIf(Java8Parser.EnhancedForStatementNoShortIfContext ctx) {
+        exitLoop();
+    }
+}
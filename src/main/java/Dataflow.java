@@ -0,0 +1,213 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Iterative dataflow over one method of a FlowGraph with a bitset for every node, all of them in
+// two long[] arrays of words() words per node. The worklist is a bitset of positions in reverse
+// postorder (of the reversed graph for backward problems) and is swept from the lowest position
+// up, so a node is usually visited after everything that flows into it. Nothing is allocated
+// once solve() runs, transfer() works on the slices of the arrays.
+// in() is the value before a node and out() after it, whichever way the problem goes.
+public abstract class Dataflow {
+
+    public enum Direction {FORWARD, BACKWARD}
+
+    protected final FlowGraph graph;
+    protected final int start;
+    protected final int size;
+    private final int bits;
+    private final int words;
+    private final Direction direction;
+    // join of the values flowing together: union for may problems, intersection for must problems
+    private final boolean union;
+    private final long[] in;
+    private final long[] out;
+
+    protected Dataflow(FlowGraph graph, int method, int bits, Direction direction, boolean union) {
+        this.graph = graph;
+        this.start = graph.getMethodStart(method);
+        this.size = graph.getMethodEnd(method) - start;
+        this.bits = bits;
+        this.words = (bits + 63) >>> 6;
+        this.direction = direction;
+        this.union = union;
+        in = new long[size * words];
+        out = new long[size * words];
+    }
+
+    // sets the words of target to the value after node, in the direction of the problem,
+    // from the value before it in source; node is an id of the FlowGraph
+    protected abstract void transfer(int node, long[] source, int sourceOffset, long[] target, int targetOffset);
+
+    // the value of the entry for a forward problem and of the nodes without successors for a
+    // backward one, every node nothing flows into starts from it; empty unless overridden
+    protected void boundary(long[] value, int offset) {
+    }
+
+    public int words() {
+        return words;
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public void solve() {
+        boolean forward = direction == Direction.FORWARD;
+        long[] before = forward ? in : out;
+        long[] after = forward ? out : in;
+        long[] scratch = new long[words];
+        long[] bound = new long[words];
+        boundary(bound, 0);
+        if (!union) {
+            // everything starts at the top of the lattice, all bits set
+            Arrays.fill(after, -1L);
+            if ((bits & 63) != 0) {
+                for (int v = 0; v < size; v++)
+                    after[v * words + words - 1] = (1L << bits) - 1;
+            }
+        }
+
+        int[] order = order(forward);
+        int[] position = new int[size];
+        for (int i = 0; i < size; i++)
+            position[order[i]] = i;
+        long[] pending = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++)
+            pending[i >>> 6] |= 1L << i;
+
+        int cursor = 0;
+        while (true) {
+            int next = nextPending(pending, cursor);
+            if (next < 0)
+                next = nextPending(pending, 0);
+            if (next < 0)
+                break;
+            pending[next >>> 6] &= ~(1L << next);
+            cursor = next + 1;
+            int v = order[next];
+            int node = start + v;
+            int offset = v * words;
+
+            // join of the values flowing in
+            int first = forward ? graph.predecessorStart(node) : graph.successorStart(node);
+            int last = forward ? graph.predecessorEnd(node) : graph.successorEnd(node);
+            if (first == last) {
+                System.arraycopy(bound, 0, before, offset, words);
+            } else {
+                int from = ((forward ? graph.predecessor(first) : graph.successor(first)) - start) * words;
+                System.arraycopy(after, from, before, offset, words);
+                for (int i = first + 1; i < last; i++) {
+                    from = ((forward ? graph.predecessor(i) : graph.successor(i)) - start) * words;
+                    for (int w = 0; w < words; w++) {
+                        if (union)
+                            before[offset + w] |= after[from + w];
+                        else
+                            before[offset + w] &= after[from + w];
+                    }
+                }
+            }
+
+            transfer(node, before, offset, scratch, 0);
+            boolean changed = false;
+            for (int w = 0; w < words; w++) {
+                if (scratch[w] != after[offset + w]) {
+                    after[offset + w] = scratch[w];
+                    changed = true;
+                }
+            }
+            if (!changed)
+                continue;
+            first = forward ? graph.successorStart(node) : graph.predecessorStart(node);
+            last = forward ? graph.successorEnd(node) : graph.predecessorEnd(node);
+            for (int i = first; i < last; i++) {
+                int p = position[(forward ? graph.successor(i) : graph.predecessor(i)) - start];
+                pending[p >>> 6] |= 1L << p;
+            }
+        }
+    }
+
+    private static int nextPending(long[] pending, int from) {
+        int w = from >>> 6;
+        if (w >= pending.length)
+            return -1;
+        long word = pending[w] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == pending.length)
+                return -1;
+            word = pending[w];
+        }
+    }
+
+    // reverse postorder of a depth first walk from the entry, or from the nodes without successors
+    // on the reversed graph; nodes the walk doesn't reach are walked after it and so come first
+    private int[] order(boolean forward) {
+        int[] postorder = new int[size];
+        int count = 0;
+        boolean[] seen = new boolean[size];
+        int[] stack = new int[size];
+        int[] edges = new int[size];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int root = 0; root < size; root++) {
+                int node = start + root;
+                boolean isRoot = forward ? root == 0 : graph.successorStart(node) == graph.successorEnd(node);
+                // first the real roots, then whatever is left
+                if (seen[root] || (pass == 0 && !isRoot))
+                    continue;
+                int depth = 0;
+                seen[root] = true;
+                stack[0] = root;
+                edges[0] = forward ? graph.successorStart(node) : graph.predecessorStart(node);
+                while (depth >= 0) {
+                    int v = stack[depth];
+                    int end = forward ? graph.successorEnd(start + v) : graph.predecessorEnd(start + v);
+                    if (edges[depth] == end) {
+                        postorder[count++] = v;
+                        depth--;
+                        continue;
+                    }
+                    int i = edges[depth]++;
+                    int w = (forward ? graph.successor(i) : graph.predecessor(i)) - start;
+                    if (seen[w])
+                        continue;
+                    seen[w] = true;
+                    stack[++depth] = w;
+                    edges[depth] = forward ? graph.successorStart(start + w) : graph.predecessorStart(start + w);
+                }
+            }
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+            order[i] = postorder[size - 1 - i];
+        return order;
+    }
+
+    public boolean in(int node, int bit) {
+        return get(in, node, bit);
+    }
+
+    public boolean out(int node, int bit) {
+        return get(out, node, bit);
+    }
+
+    public BitSet getIn(int node) {
+        return BitSet.valueOf(Arrays.copyOfRange(in, index(node) * words, (index(node) + 1) * words));
+    }
+
+    public BitSet getOut(int node) {
+        return BitSet.valueOf(Arrays.copyOfRange(out, index(node) * words, (index(node) + 1) * words));
+    }
+
+    private boolean get(long[] values, int node, int bit) {
+        if (bit < 0 || bit >= bits)
+            throw new IndexOutOfBoundsException("bit " + bit);
+        return (values[index(node) * words + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private int index(int node) {
+        if (node < start || node >= start + size)
+            throw new IllegalArgumentException("node " + node + " is not in the method");
+        return node - start;
+    }
+}
@@ -0,0 +1,471 @@
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The variables every node of a method defines and uses, read off the tokens of the node labels.
+// A variable is a parameter, a name declared as a local, or a name assigned to: followed by '='
+// or a compound assignment, or next to '++' or '--'. Every other mention of a variable is a use,
+// except after '.' and before '('. A declaration without an initializer defines nothing.
+// Scopes are not told apart, two locals of the same name are one variable,
+// and a field assigned by its plain name counts as a variable too.
+// A definition in a node drawn as one statement for a whole while, do, switch, try, synchronized,
+// assert or labeled statement, inside braces or in the body of a lambda may not happen when the node
+// runs: it is a may definition, which adds to the definitions of the variable without replacing them.
+// A use only counts when the value comes from before the node, not from a definition the node made
+// earlier on the way to the use; a definition is made at the ';', ',' or brace after it, and only
+// covers the rest of its block up to the first branch, case or '&&', '||' or '?'.
+// Definitions and uses of node n are def(i) for i from defStart(n) to defEnd(n), and the same for uses.
+public class DefUse {
+
+    private static final int NOTHING = 0;
+    private static final int DEF = 1;
+    private static final int USE = 2;
+    private static final int DECLARE = 4;
+    private static final int MAY = 8;
+
+    private final int start;
+    private final int size;
+    private final List<String> variables = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int[] defOffsets;
+    private final int[] defs;
+    private final boolean[] mayDefs;
+    private final int[] useOffsets;
+    private final int[] uses;
+
+    // tokens of the label being read
+    private int[] types = new int[32];
+    private String[] texts = new String[32];
+    private int count;
+    private Java8Lexer lexer;
+
+    // mentions of names as node, name and what the mention does, in the order of the tokens
+    private int[] nodes = new int[64];
+    private String[] names = new String[64];
+    private int[] kinds = new int[64];
+    private int mentions = 0;
+
+    // blocks of the label being read: the block open at every brace depth, whether a branch has been
+    // seen in it, and which blocks are still open. A name is covered by a definition in the block
+    // in shadows, once that definition is made; pending ones are made at the next ';', ',' or brace
+    private int[] blocks = new int[8];
+    private boolean[] branched = new boolean[8];
+    private boolean[] open = new boolean[8];
+    private final Map<String, Integer> shadows = new HashMap<>();
+    private String[] pending = new String[8];
+    private int[] pendingBlocks = new int[8];
+    private int pendingCount;
+
+    public DefUse(FlowGraph graph, int method) {
+        start = graph.getMethodStart(method);
+        size = graph.getMethodEnd(method) - start;
+
+        for (int v = 0; v < size; v++) {
+            read(graph.getLabel(start + v));
+            if (graph.getKind(start + v) == GraphSink.NodeKind.ENTRY)
+                parameters(v);
+            else
+                statement(v);
+        }
+        types = null;
+        texts = null;
+        lexer = null;
+        blocks = null;
+        branched = null;
+        open = null;
+        pending = null;
+        pendingBlocks = null;
+
+        // rows of variables per node, a variable only once per node and a may definition
+        // only when the node makes no other definition of the variable
+        defOffsets = new int[size + 1];
+        useOffsets = new int[size + 1];
+        int[] defined = new int[variables.size()];
+        int[] definedAt = new int[variables.size()];
+        int[] used = new int[variables.size()];
+        Arrays.fill(defined, -1);
+        Arrays.fill(used, -1);
+        int[] defList = new int[mentions];
+        boolean[] mayList = new boolean[mentions];
+        int[] useList = new int[mentions];
+        int defCount = 0;
+        int useCount = 0;
+        int m = 0;
+        for (int v = 0; v < size; v++) {
+            for (; m < mentions && nodes[m] == v; m++) {
+                Integer variable = indexes.get(names[m]);
+                if (variable == null)
+                    continue;
+                if ((kinds[m] & DEF) != 0) {
+                    if (defined[variable] != v) {
+                        defined[variable] = v;
+                        definedAt[variable] = defCount;
+                        mayList[defCount] = (kinds[m] & MAY) != 0;
+                        defList[defCount++] = variable;
+                    } else if ((kinds[m] & MAY) == 0) {
+                        mayList[definedAt[variable]] = false;
+                    }
+                }
+                if ((kinds[m] & USE) != 0 && used[variable] != v) {
+                    used[variable] = v;
+                    useList[useCount++] = variable;
+                }
+            }
+            defOffsets[v + 1] = defCount;
+            useOffsets[v + 1] = useCount;
+        }
+        defs = Arrays.copyOf(defList, defCount);
+        mayDefs = Arrays.copyOf(mayList, defCount);
+        uses = Arrays.copyOf(useList, useCount);
+        nodes = null;
+        names = null;
+        kinds = null;
+    }
+
+    // the tokens of the label without hidden ones, straight from the stream for a TokenLabel.
+    // Other labels have lost their ';', a new line of a block label stands in for it
+    private void read(CharSequence label) {
+        count = 0;
+        if (label instanceof TokenLabel) {
+            TokenLabel tokenLabel = (TokenLabel) label;
+            TokenStream stream = tokenLabel.getTokens();
+            for (int i = tokenLabel.getStart(); i <= tokenLabel.getStop(); i++)
+                add(stream.get(i));
+            return;
+        }
+        if (label.length() == 0)
+            return;
+        if (lexer == null)
+            lexer = new Java8Lexer(null);
+        lexer.setInputStream(new ANTLRInputStream(label.toString()));
+        int line = 1;
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            if (token.getLine() != line && count > 0 && types[count - 1] != Java8Parser.SEMI)
+                add(Java8Parser.SEMI, ";");
+            line = token.getLine();
+            add(token);
+        }
+    }
+
+    private void add(Token token) {
+        if (token.getChannel() != Token.DEFAULT_CHANNEL || token.getType() == Token.EOF)
+            return;
+        add(token.getType(), token.getText());
+    }
+
+    private void add(int type, String text) {
+        if (count == types.length) {
+            types = Arrays.copyOf(types, count * 2);
+            texts = Arrays.copyOf(texts, count * 2);
+        }
+        types[count] = type;
+        texts[count++] = text;
+    }
+
+    private void mention(int node, String name, int kind) {
+        if (mentions == nodes.length) {
+            nodes = Arrays.copyOf(nodes, mentions * 2);
+            names = Arrays.copyOf(names, mentions * 2);
+            kinds = Arrays.copyOf(kinds, mentions * 2);
+        }
+        nodes[mentions] = node;
+        names[mentions] = name;
+        kinds[mentions++] = kind;
+        if ((kind & (DEF | DECLARE)) != 0 && !indexes.containsKey(name)) {
+            indexes.put(name, variables.size());
+            variables.add(name);
+        }
+    }
+
+    // the names of the parameters of a method header: at the top of its parameter list,
+    // outside the '< >' of type arguments
+    private void parameters(int node) {
+        int depth = 0;
+        int angles = 0;
+        for (int i = parameterList(); i < count; i++) {
+            switch (types[i]) {
+                case Java8Parser.LPAREN:
+                    depth++;
+                    break;
+                case Java8Parser.RPAREN:
+                    if (--depth == 0)
+                        return;
+                    break;
+                case Java8Parser.LT:
+                    angles++;
+                    break;
+                case Java8Parser.GT:
+                    angles--;
+                    break;
+                case Java8Parser.Identifier:
+                    if (depth == 1 && angles == 0 && isParameter(i))
+                        mention(node, texts[i], DEF);
+                    break;
+            }
+        }
+    }
+
+    // index of the '(' of the parameter list of a method header: the first one after a name
+    // that isn't the name of an annotation
+    private int parameterList() {
+        for (int i = 1; i < count; i++) {
+            if (types[i] == Java8Parser.LPAREN && types[i - 1] == Java8Parser.Identifier
+                    && (i < 2 || (types[i - 2] != Java8Parser.AT && types[i - 2] != Java8Parser.DOT)))
+                return i;
+        }
+        return count;
+    }
+
+    // the name of a parameter is followed by ',' or ')', after the '[ ]' of an old style array
+    private boolean isParameter(int i) {
+        int next = i + 1;
+        while (next + 1 < count && types[next] == Java8Parser.LBRACK && types[next + 1] == Java8Parser.RBRACK)
+            next += 2;
+        return next < count && (types[next] == Java8Parser.COMMA || types[next] == Java8Parser.RPAREN);
+    }
+
+    private void statement(int node) {
+        boolean compound = isCompound();
+        int depth = 0;
+        int parens = 0;
+        // parentheses and braces around the expression body of a lambda, -1 outside of one
+        int lambda = -1;
+        int lambdaDepth = -1;
+        int blockCount = 1;
+        blocks[0] = 0;
+        branched[0] = false;
+        open[0] = true;
+        shadows.clear();
+        pendingCount = 0;
+        for (int i = 0; i < count; i++) {
+            switch (types[i]) {
+                case Java8Parser.LPAREN:
+                    parens++;
+                    continue;
+                case Java8Parser.RPAREN:
+                    if (--parens < lambda)
+                        lambda = -1;
+                    continue;
+                case Java8Parser.LBRACE:
+                    settle();
+                    if (++depth == blocks.length) {
+                        blocks = Arrays.copyOf(blocks, depth * 2);
+                        branched = Arrays.copyOf(branched, depth * 2);
+                    }
+                    if (blockCount == open.length)
+                        open = Arrays.copyOf(open, blockCount * 2);
+                    blocks[depth] = blockCount;
+                    branched[depth] = false;
+                    open[blockCount++] = true;
+                    continue;
+                case Java8Parser.RBRACE:
+                    settle();
+                    if (depth > 0)
+                        open[blocks[depth--]] = false;
+                    if (depth < lambdaDepth)
+                        lambda = -1;
+                    continue;
+                case Java8Parser.SEMI:
+                    settle();
+                    if (depth == lambdaDepth)
+                        lambda = -1;
+                    continue;
+                case Java8Parser.COMMA:
+                    if (parens == lambda)
+                        lambda = -1;
+                    if (parens == 0)
+                        settle();
+                    continue;
+                case Java8Parser.ARROW:
+                    if (lambda < 0 && (i + 1 == count || types[i + 1] != Java8Parser.LBRACE)) {
+                        lambda = parens;
+                        lambdaDepth = depth;
+                    }
+                    continue;
+                case Java8Parser.IF:
+                case Java8Parser.ELSE:
+                case Java8Parser.FOR:
+                case Java8Parser.WHILE:
+                case Java8Parser.DO:
+                case Java8Parser.SWITCH:
+                case Java8Parser.CASE:
+                case Java8Parser.DEFAULT:
+                case Java8Parser.AND:
+                case Java8Parser.OR:
+                case Java8Parser.QUESTION:
+                    // what follows may not run, or not in the order of the tokens
+                    branched[depth] = true;
+                    continue;
+                case Java8Parser.Identifier:
+                    break;
+                default:
+                    continue;
+            }
+            int kind = mention(i);
+            if (kind == NOTHING)
+                continue;
+            if ((kind & USE) != 0) {
+                Integer block = shadows.get(texts[i]);
+                if (block != null && open[block])
+                    kind &= ~USE;
+            }
+            if ((kind & DEF) != 0) {
+                if (compound || depth > 0 || lambda >= 0)
+                    kind |= MAY;
+                if (lambda < 0 && !branched[depth])
+                    pend(texts[i], blocks[depth]);
+            }
+            if (kind != NOTHING)
+                mention(node, texts[i], kind);
+        }
+    }
+
+    // a statement of the kind the graph draws as one node with everything inside it
+    private boolean isCompound() {
+        if (count == 0)
+            return false;
+        switch (types[0]) {
+            case Java8Parser.WHILE:
+            case Java8Parser.DO:
+            case Java8Parser.SWITCH:
+            case Java8Parser.TRY:
+            case Java8Parser.SYNCHRONIZED:
+            case Java8Parser.ASSERT:
+                return true;
+            case Java8Parser.Identifier:
+                return count > 1 && types[1] == Java8Parser.COLON;
+            default:
+                return false;
+        }
+    }
+
+    private void pend(String name, int block) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+            pendingBlocks = Arrays.copyOf(pendingBlocks, pendingCount * 2);
+        }
+        pending[pendingCount] = name;
+        pendingBlocks[pendingCount++] = block;
+    }
+
+    private void settle() {
+        for (int i = 0; i < pendingCount; i++)
+            shadows.put(pending[i], pendingBlocks[i]);
+        pendingCount = 0;
+    }
+
+    private int mention(int i) {
+        int previous = i > 0 ? types[i - 1] : Token.EOF;
+        int next = i + 1 < count && types[i + 1] != Java8Parser.SEMI ? types[i + 1] : Token.EOF;
+        if (previous == Java8Parser.DOT || previous == Java8Parser.COLONCOLON || next == Java8Parser.LPAREN)
+            return NOTHING;
+        if (isAssignment(next))
+            return next == Java8Parser.ASSIGN ? DEF : DEF | USE;
+        if (next == Java8Parser.INC || next == Java8Parser.DEC
+                || previous == Java8Parser.INC || previous == Java8Parser.DEC)
+            return DEF | USE;
+        // a local declared after its type; the name of a for each loop variable is defined by the loop
+        if (isType(previous)) {
+            if (next == Java8Parser.COLON)
+                return DEF;
+            if (next == Java8Parser.COMMA || next == Token.EOF)
+                return DECLARE;
+        }
+        return USE;
+    }
+
+    private static boolean isAssignment(int type) {
+        switch (type) {
+            case Java8Parser.ASSIGN:
+            case Java8Parser.ADD_ASSIGN:
+            case Java8Parser.SUB_ASSIGN:
+            case Java8Parser.MUL_ASSIGN:
+            case Java8Parser.DIV_ASSIGN:
+            case Java8Parser.AND_ASSIGN:
+            case Java8Parser.OR_ASSIGN:
+            case Java8Parser.XOR_ASSIGN:
+            case Java8Parser.MOD_ASSIGN:
+            case Java8Parser.LSHIFT_ASSIGN:
+            case Java8Parser.RSHIFT_ASSIGN:
+            case Java8Parser.URSHIFT_ASSIGN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isType(int type) {
+        switch (type) {
+            case Java8Parser.Identifier:
+            case Java8Parser.RBRACK:
+            case Java8Parser.BOOLEAN:
+            case Java8Parser.BYTE:
+            case Java8Parser.CHAR:
+            case Java8Parser.SHORT:
+            case Java8Parser.INT:
+            case Java8Parser.LONG:
+            case Java8Parser.FLOAT:
+            case Java8Parser.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public int getVariableCount() {
+        return variables.size();
+    }
+
+    public String getVariable(int variable) {
+        return variables.get(variable);
+    }
+
+    // -1 when the method has no such variable
+    public int indexOf(String name) {
+        Integer variable = indexes.get(name);
+        return variable == null ? -1 : variable;
+    }
+
+    public int defStart(int node) {
+        return defOffsets[index(node)];
+    }
+
+    public int defEnd(int node) {
+        return defOffsets[index(node) + 1];
+    }
+
+    public int def(int i) {
+        return defs[i];
+    }
+
+    // a definition that may not happen when its node runs
+    public boolean isMayDef(int i) {
+        return mayDefs[i];
+    }
+
+    public int useStart(int node) {
+        return useOffsets[index(node)];
+    }
+
+    public int useEnd(int node) {
+        return useOffsets[index(node) + 1];
+    }
+
+    public int use(int i) {
+        return uses[i];
+    }
+
+    private int index(int node) {
+        if (node < start || node >= start + size)
+            throw new IllegalArgumentException("node " + node + " is not in the method");
+        return node - start;
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+// Dominators or post-dominators of one method of a FlowGraph, by Lengauer and Tarjan
+// with path compression, O(E log N) and no recursion. Node ids are those of the FlowGraph.
+// Post-dominators are taken towards a virtual exit that every node without successors leads to,
+// the returns and the end of the method; it is the root of the post-dominator tree, called EXIT.
+// The tree is numbered in preorder and postorder once, so dominates() is two comparisons.
+public class DominatorTree {
+
+    // the dominator of the root and of nodes the root doesn't reach
+    public static final int NONE = -1;
+    public static final int EXIT = -2;
+
+    private final int start;
+    private final int size;
+    private final boolean post;
+    // indexes from 0 for the nodes of the method, size for the virtual exit
+    private final int root;
+    private final int[] idom;
+    private final int[] preorder;
+    private final int[] postorder;
+    private final int[] depths;
+    private final int[] childOffsets;
+    private final int[] children;
+
+    public static DominatorTree dominators(FlowGraph graph, int method) {
+        return new DominatorTree(graph, method, false);
+    }
+
+    public static DominatorTree postDominators(FlowGraph graph, int method) {
+        return new DominatorTree(graph, method, true);
+    }
+
+    private DominatorTree(FlowGraph graph, int method, boolean post) {
+        this.post = post;
+        start = graph.getMethodStart(method);
+        size = graph.getMethodEnd(method) - start;
+        int count = post ? size + 1 : size;
+        root = post ? size : 0;
+
+        // the edges in the direction of the walk, turned around for post-dominators
+        int[] successorOffsets = new int[count + 1];
+        int[] predecessorOffsets = new int[count + 1];
+        int edgeCount = 0;
+        for (int v = 0; v < size; v++) {
+            int out = graph.successorEnd(start + v) - graph.successorStart(start + v);
+            edgeCount += post && out == 0 ? 1 : out;
+        }
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int e = 0;
+        for (int v = 0; v < size; v++) {
+            for (int i = graph.successorStart(start + v); i < graph.successorEnd(start + v); i++) {
+                sources[e] = v;
+                targets[e++] = graph.successor(i) - start;
+            }
+            if (post && graph.successorEnd(start + v) == graph.successorStart(start + v)) {
+                sources[e] = v;
+                targets[e++] = size;
+            }
+        }
+        if (post) {
+            int[] swap = sources;
+            sources = targets;
+            targets = swap;
+        }
+        int[] successors = rows(count, edgeCount, sources, targets, successorOffsets);
+        int[] predecessors = rows(count, edgeCount, targets, sources, predecessorOffsets);
+
+        idom = compute(count, successorOffsets, successors, predecessorOffsets, predecessors);
+
+        // children of every node in the tree, then the numbering
+        childOffsets = new int[count + 1];
+        for (int v = 0; v < count; v++) {
+            if (idom[v] >= 0)
+                childOffsets[idom[v] + 1]++;
+        }
+        for (int v = 0; v < count; v++)
+            childOffsets[v + 1] += childOffsets[v];
+        children = new int[childOffsets[count]];
+        int[] next = Arrays.copyOf(childOffsets, count);
+        for (int v = 0; v < count; v++) {
+            if (idom[v] >= 0)
+                children[next[idom[v]]++] = v;
+        }
+        preorder = new int[count];
+        postorder = new int[count];
+        depths = new int[count];
+        Arrays.fill(preorder, -1);
+        Arrays.fill(postorder, -1);
+        number(count);
+    }
+
+    // successors of every node as compressed rows, in the order of the edges
+    private static int[] rows(int count, int edgeCount, int[] from, int[] to, int[] offsets) {
+        for (int e = 0; e < edgeCount; e++)
+            offsets[from[e] + 1]++;
+        for (int v = 0; v < count; v++)
+            offsets[v + 1] += offsets[v];
+        int[] next = Arrays.copyOf(offsets, count);
+        int[] rows = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++)
+            rows[next[from[e]]++] = to[e];
+        return rows;
+    }
+
+    // immediate dominator of every node, NONE for the root and what it doesn't reach
+    private int[] compute(int count, int[] successorOffsets, int[] successors,
+                          int[] predecessorOffsets, int[] predecessors) {
+        // depth first numbering; everything below works on these numbers
+        int[] number = new int[count];
+        Arrays.fill(number, -1);
+        int[] vertex = new int[count];
+        int[] parent = new int[count];
+        int[] stack = new int[count];
+        int[] edges = new int[count];
+        int reached = 0;
+        int depth = 0;
+        number[root] = reached;
+        vertex[reached] = root;
+        parent[reached++] = -1;
+        stack[0] = root;
+        edges[0] = successorOffsets[root];
+        while (depth >= 0) {
+            int v = stack[depth];
+            if (edges[depth] == successorOffsets[v + 1]) {
+                depth--;
+                continue;
+            }
+            int w = successors[edges[depth]++];
+            if (number[w] >= 0)
+                continue;
+            number[w] = reached;
+            vertex[reached] = w;
+            parent[reached++] = number[v];
+            stack[++depth] = w;
+            edges[depth] = successorOffsets[w];
+        }
+
+        int[] semi = new int[reached];
+        int[] label = new int[reached];
+        int[] ancestor = new int[reached];
+        int[] dominator = new int[reached];
+        int[] bucket = new int[reached];
+        int[] bucketNext = new int[reached];
+        for (int i = 0; i < reached; i++) {
+            semi[i] = i;
+            label[i] = i;
+            ancestor[i] = -1;
+            bucket[i] = -1;
+        }
+        for (int w = reached - 1; w > 0; w--) {
+            int node = vertex[w];
+            for (int i = predecessorOffsets[node]; i < predecessorOffsets[node + 1]; i++) {
+                int v = number[predecessors[i]];
+                if (v < 0)
+                    continue;
+                int u = eval(v, ancestor, label, semi, stack);
+                if (semi[u] < semi[w])
+                    semi[w] = semi[u];
+            }
+            bucketNext[w] = bucket[semi[w]];
+            bucket[semi[w]] = w;
+            int p = parent[w];
+            ancestor[w] = p;
+            for (int v = bucket[p]; v >= 0; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, stack);
+                dominator[v] = semi[u] < semi[v] ? u : p;
+            }
+            bucket[p] = -1;
+        }
+        for (int w = 1; w < reached; w++) {
+            if (dominator[w] != semi[w])
+                dominator[w] = dominator[dominator[w]];
+        }
+
+        int[] idom = new int[count];
+        Arrays.fill(idom, NONE);
+        for (int w = 1; w < reached; w++)
+            idom[vertex[w]] = vertex[dominator[w]];
+        return idom;
+    }
+
+    // the node of least semidominator on the path from v up to the root of its tree in the forest,
+    // compressing the path on the way
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+        if (ancestor[v] < 0)
+            return v;
+        int top = 0;
+        for (int x = v; ancestor[ancestor[x]] >= 0; x = ancestor[x])
+            stack[top++] = x;
+        // from the one nearest the root down to v
+        while (top > 0) {
+            int x = stack[--top];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]])
+                label[x] = label[a];
+            ancestor[x] = ancestor[a];
+        }
+        return label[v];
+    }
+
+    private void number(int count) {
+        int[] stack = new int[count];
+        int[] next = new int[count];
+        int depth = 0;
+        int counter = 0;
+        int finished = 0;
+        stack[0] = root;
+        next[0] = childOffsets[root];
+        preorder[root] = counter++;
+        while (depth >= 0) {
+            int v = stack[depth];
+            if (next[depth] == childOffsets[v + 1]) {
+                postorder[v] = finished++;
+                depth--;
+                continue;
+            }
+            int child = children[next[depth]++];
+            preorder[child] = counter++;
+            depths[child] = depth + 1;
+            stack[++depth] = child;
+            next[depth] = childOffsets[child];
+        }
+    }
+
+    public boolean isPostDominators() {
+        return post;
+    }
+
+    // entry node of the method, or EXIT
+    public int getRoot() {
+        return node(root);
+    }
+
+    // false for nodes that can't be reached from the root, for post-dominators those that never end
+    public boolean isReachable(int node) {
+        return preorder[index(node)] >= 0;
+    }
+
+    public int getImmediateDominator(int node) {
+        int d = idom[index(node)];
+        return d < 0 ? NONE : node(d);
+    }
+
+    // number of dominators above the node in the tree, 0 for the root
+    public int getDepth(int node) {
+        return depths[index(node)];
+    }
+
+    // every node dominates itself
+    public boolean dominates(int a, int b) {
+        int x = index(a);
+        int y = index(b);
+        return preorder[x] >= 0 && preorder[y] >= 0
+                && preorder[x] <= preorder[y] && postorder[y] <= postorder[x];
+    }
+
+    public boolean strictlyDominates(int a, int b) {
+        return a != b && dominates(a, b);
+    }
+
+    // the nodes the node immediately dominates are child(i) for i from childStart() to childEnd()
+    public int childStart(int node) {
+        return childOffsets[index(node)];
+    }
+
+    public int childEnd(int node) {
+        return childOffsets[index(node) + 1];
+    }
+
+    public int child(int i) {
+        return node(children[i]);
+    }
+
+    private int index(int node) {
+        if (node == EXIT && post)
+            return size;
+        if (node < start || node >= start + size)
+            throw new IllegalArgumentException("node " + node + " is not in the method");
+        return node - start;
+    }
+
+    private int node(int index) {
+        return index == size ? EXIT : start + index;
+    }
+}
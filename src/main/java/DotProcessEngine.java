@@ -0,0 +1,120 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+// Renders with the dot executable of a graphviz installation, one process per graph.
+// The process for the next graph is started as soon as the last one is done, so a render
+// only waits for the layout and not for the process to come up. Processes are independent,
+// any number of these engines can render at the same time, and cancel() simply kills the process.
+public class DotProcessEngine implements RenderEngine {
+
+    private final String command;
+    private Process spare;
+    private volatile Process running;
+    private volatile boolean cancelled = false;
+
+    public DotProcessEngine() throws IOException {
+        this("dot");
+    }
+
+    public DotProcessEngine(String command) throws IOException {
+        this.command = command;
+        spare = start();
+    }
+
+    // whether the command runs at all
+    public static boolean isAvailable(String command) {
+        try {
+            Process process = new ProcessBuilder(command, "-V").redirectErrorStream(true).start();
+            drain(process.getInputStream());
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Process start() throws IOException {
+        return new ProcessBuilder(command, "-Tpng").redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    @Override
+    public void render(String dot, int height, File file) throws IOException {
+        if (cancelled)
+            throw new IOException("engine was cancelled");
+        Process process = spare != null ? spare : start();
+        spare = null;
+        running = process;
+        boolean done = false;
+        try {
+            try (OutputStream in = process.getOutputStream()) {
+                in.write(sized(dot, height).getBytes(StandardCharsets.UTF_8));
+            }
+            Files.copy(process.getInputStream(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            int exit = process.waitFor();
+            if (cancelled)
+                throw new IOException("render cancelled");
+            if (exit != 0)
+                throw new IOException(command + " exited with " + exit);
+            done = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("render interrupted");
+        } catch (IOException e) {
+            throw cancelled ? new IOException("render cancelled", e) : e;
+        } finally {
+            running = null;
+            if (!done) {
+                process.destroyForcibly();
+                file.delete();
+            }
+        }
+        // only after a render that worked, a failure starting it must not hide why the render failed.
+        // The graph is written either way, if dot can't be started the next render says so
+        try {
+            spare = start();
+        } catch (IOException e) {
+            spare = null;
+        }
+    }
+
+    // dot takes the size in inches, at 72 dpi that is the height in pixels / 72;
+    // the '!' scales small graphs up as well, the huge width leaves the height as the only limit
+    static String sized(String dot, int height) {
+        // the graph name can't hold a line break, so the first "{\n" opens the body
+        int open = dot.indexOf("{\n");
+        String size = String.format(Locale.ROOT, "graph [dpi=72,size=\"1000,%.2f!\"];", height / 72.0);
+        return dot.substring(0, open + 1) + "\n" + size + dot.substring(open + 1);
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        Process process = running;
+        if (process != null)
+            process.destroyForcibly();
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        if (spare != null) {
+            spare.destroyForcibly();
+            spare = null;
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) >= 0) {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+// Writes the graph as DOT text while it is built, nothing of it is kept in memory.
+// Every beginGraph()/endGraph() pair is one digraph, so the CFGs of many files can go into one stream
+// (dot renders every graph of its input).
+public class DotWriter implements GraphSink, Closeable {
+
+    private final Writer out;
+    private final Appendable escaped;
+    private boolean inGraph = false;
+
+    public DotWriter(Writer out) {
+        this.out = out;
+        this.escaped = new Escaper(out);
+    }
+
+    public void beginGraph(String name) {
+        try {
+            if (inGraph)
+                endGraph();
+            out.write("digraph \"");
+            escaped.append(name);
+            out.write("\" {\n");
+            inGraph = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void endGraph() {
+        if (!inGraph)
+            return;
+        try {
+            out.write("}\n");
+            inGraph = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void beginMethod(CharSequence label) {
+        if (!inGraph)
+            beginGraph("CFGscheme");
+        try {
+            // a comment, line breaks are the only thing that could end it early
+            out.write("// ");
+            out.write(label.toString().replace('\n', ' '));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void node(int id, CharSequence label, NodeKind kind) {
+        try {
+            out.write('"');
+            out.write(Integer.toString(id));
+            out.write("\" [label=\"");
+            if (label instanceof TokenLabel)
+                ((TokenLabel) label).appendTo(escaped);
+            else
+                escaped.append(label);
+            out.write("\",shape=");
+            out.write(shape(kind));
+            out.write("];\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void edge(int from, int to, EdgeKind kind) {
+        try {
+            out.write('"');
+            out.write(Integer.toString(from));
+            out.write("\" -> \"");
+            out.write(Integer.toString(to));
+            out.write(kind == EdgeKind.FALSE ? "\" [style=dashed];\n" : "\";\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endMethod() {
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        endGraph();
+        out.close();
+    }
+
+    private static String shape(NodeKind kind) {
+        switch (kind) {
+            case ENTRY:
+            case RETURN:
+                return "ellipse";
+            case BRANCH:
+                return "diamond";
+            case JOIN:
+                return "point";
+            default:
+                return "rectangle";
+        }
+    }
+
+    // escapes everything appended for use inside a quoted DOT string
+    private static class Escaper implements Appendable {
+        private final Writer out;
+
+        Escaper(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            for (int i = start; i < end; i++)
+                append(csq.charAt(i));
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.write('\\');
+                    out.write(c);
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    out.write(c);
+            }
+            return this;
+        }
+    }
+}
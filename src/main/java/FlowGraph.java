@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+// The control-flow graph of a file as plain arrays, made by FlowGraphSink.
+// Nodes are numbered from 0 in the order they were built, the nodes of a method are
+// the range from its entry node to the entry of the next one. Successors and predecessors are
+// kept in compressed rows: the edges of node n are the indexes from successorStart(n)
+// to successorEnd(n), in the order they were built. Nothing here refers to graphviz,
+// export() hands the graph to any GraphSink, which is how toScheme() draws it.
+public class FlowGraph {
+
+    private static final GraphSink.NodeKind[] NODE_KINDS = GraphSink.NodeKind.values();
+    private static final GraphSink.EdgeKind[] EDGE_KINDS = GraphSink.EdgeKind.values();
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int methodCount;
+    private final CharSequence[] labels;
+    private final byte[] nodeKinds;
+    // edges built before the node, to give them back in the order they came in
+    private final int[] edgeMarks;
+    private final int[] methodStarts;
+    private final int[] methodEdgeStarts;
+
+    // edges in the order they were built
+    private final int[] sources;
+    private final int[] targets;
+    private final byte[] edgeKinds;
+
+    private final int[] successorOffsets;
+    private final int[] successors;
+    private final byte[] successorKinds;
+    private final int[] predecessorOffsets;
+    private final int[] predecessors;
+    private final byte[] predecessorKinds;
+
+    FlowGraph(int nodeCount, CharSequence[] labels, byte[] nodeKinds, int[] edgeMarks,
+              int methodCount, int[] methodStarts, int[] methodEdgeStarts,
+              int edgeCount, int[] sources, int[] targets, byte[] edgeKinds) {
+        this.nodeCount = nodeCount;
+        this.labels = labels;
+        this.nodeKinds = nodeKinds;
+        this.edgeMarks = edgeMarks;
+        this.methodCount = methodCount;
+        this.methodStarts = methodStarts;
+        this.methodEdgeStarts = methodEdgeStarts;
+        this.edgeCount = edgeCount;
+        this.sources = sources;
+        this.targets = targets;
+        this.edgeKinds = edgeKinds;
+
+        // counting sort of the edges by source and by target, stable so rows keep the build order
+        successorOffsets = new int[nodeCount + 1];
+        predecessorOffsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            successorOffsets[sources[e] + 1]++;
+            predecessorOffsets[targets[e] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            successorOffsets[n + 1] += successorOffsets[n];
+            predecessorOffsets[n + 1] += predecessorOffsets[n];
+        }
+        successors = new int[edgeCount];
+        successorKinds = new byte[edgeCount];
+        predecessors = new int[edgeCount];
+        predecessorKinds = new byte[edgeCount];
+        int[] nextSuccessor = Arrays.copyOf(successorOffsets, nodeCount);
+        int[] nextPredecessor = Arrays.copyOf(predecessorOffsets, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int s = nextSuccessor[sources[e]]++;
+            successors[s] = targets[e];
+            successorKinds[s] = edgeKinds[e];
+            int p = nextPredecessor[targets[e]]++;
+            predecessors[p] = sources[e];
+            predecessorKinds[p] = edgeKinds[e];
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    // entry node of the method
+    public int getMethodStart(int method) {
+        return methodStarts[method];
+    }
+
+    // first node after the method
+    public int getMethodEnd(int method) {
+        return method + 1 < methodCount ? methodStarts[method + 1] : nodeCount;
+    }
+
+    public int getMethodOf(int node) {
+        int low = 0;
+        int high = methodCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (methodStarts[mid] <= node)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    public CharSequence getLabel(int node) {
+        return labels[node];
+    }
+
+    public GraphSink.NodeKind getKind(int node) {
+        return NODE_KINDS[nodeKinds[node]];
+    }
+
+    public int successorStart(int node) {
+        return successorOffsets[node];
+    }
+
+    public int successorEnd(int node) {
+        return successorOffsets[node + 1];
+    }
+
+    public int successor(int edge) {
+        return successors[edge];
+    }
+
+    public GraphSink.EdgeKind successorKind(int edge) {
+        return EDGE_KINDS[successorKinds[edge]];
+    }
+
+    public int predecessorStart(int node) {
+        return predecessorOffsets[node];
+    }
+
+    public int predecessorEnd(int node) {
+        return predecessorOffsets[node + 1];
+    }
+
+    public int predecessor(int edge) {
+        return predecessors[edge];
+    }
+
+    public GraphSink.EdgeKind predecessorKind(int edge) {
+        return EDGE_KINDS[predecessorKinds[edge]];
+    }
+
+    // every method, with the same events in the same order as they came from FlowGraphBuilder
+    public void export(GraphSink sink) {
+        for (int m = 0; m < methodCount; m++)
+            export(m, sink);
+    }
+
+    public void export(int method, GraphSink sink) {
+        int start = getMethodStart(method);
+        int end = getMethodEnd(method);
+        int edgeEnd = method + 1 < methodCount ? methodEdgeStarts[method + 1] : edgeCount;
+        int e = methodEdgeStarts[method];
+        sink.beginMethod(labels[start]);
+        for (int n = start; n < end; n++) {
+            for (; e < edgeMarks[n]; e++)
+                sink.edge(sources[e], targets[e], EDGE_KINDS[edgeKinds[e]]);
+            sink.node(n, labels[n], NODE_KINDS[nodeKinds[n]]);
+        }
+        for (; e < edgeEnd; e++)
+            sink.edge(sources[e], targets[e], EDGE_KINDS[edgeKinds[e]]);
+        sink.endMethod();
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+// Builds the control-flow graph from a sequence of structural events
+// (method, statement, condition, loop, break, continue) and produces the same shapes as CFG.toScheme():
+// ellipse for methods and returns, rectangle for statements, diamond for conditions,
+// point for the join after a condition or loop, dashed edges for the false route.
+// Nodes and edges go to the sink as soon as they are known, only the open routes are kept here.
+// Every node and edge gets its kind, which the sinks draw as shapes and styles.
+// The builder counts the nodes, edges, decisions and returns of every method as it goes and hands
+// them to a consumer of MethodMetrics when the method ends; without a sink that is all it does.
+public class FlowGraphBuilder {
+
+    private static class Frame {
+        final int head;
+        final boolean loop;
+        int exit;
+        boolean inElse = false;
+        int[] thenRoutes;
+
+        Frame(int head, boolean loop) {
+            this.head = head;
+            this.loop = loop;
+        }
+    }
+
+    private final GraphSink sink;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    // nodes the next node gets linked from
+    private int[] routes = new int[8];
+    private int routeCount = 0;
+    // the condition or loop head among the routes, its edge to the next node is a branch
+    private int branch = -1;
+    private boolean falseBranch = false;
+    private boolean inMethod = false;
+    private int counter = 0;
+
+    private final Consumer<MethodMetrics> metrics;
+    private CharSequence method;
+    private int nodes;
+    private int edges;
+    private int decisions;
+    private int nesting;
+    private int returns;
+
+    public FlowGraphBuilder(GraphSink sink) {
+        this(sink, null);
+    }
+
+    // sink may be null when only the metrics are wanted, no graph is built then
+    public FlowGraphBuilder(GraphSink sink, Consumer<MethodMetrics> metrics) {
+        this.sink = sink;
+        this.metrics = metrics;
+    }
+
+    public GraphSink getSink() {
+        return sink;
+    }
+
+    public boolean isInMethod() {
+        return inMethod;
+    }
+
+    public void beginMethod(CharSequence label) {
+        frames.clear();
+        routeCount = 0;
+        branch = -1;
+        method = label;
+        nodes = 0;
+        edges = 0;
+        decisions = 0;
+        nesting = 0;
+        returns = 0;
+        if (sink != null)
+            sink.beginMethod(label);
+        addRoute(node(label, GraphSink.NodeKind.ENTRY));
+        falseBranch = false;
+        inMethod = true;
+    }
+
+    public void endMethod() {
+        frames.clear();
+        routeCount = 0;
+        inMethod = false;
+        if (sink != null)
+            sink.endMethod();
+        if (metrics != null)
+            metrics.accept(new MethodMetrics(method.toString(), nodes, edges, decisions, nesting, returns));
+        method = null;
+    }
+
+    public void statement(CharSequence label) {
+        int n = node(label, GraphSink.NodeKind.STATEMENT);
+        linkRoutes(n, GraphSink.EdgeKind.NORMAL);
+        addRoute(n);
+    }
+
+    public void returnStatement(CharSequence label) {
+        returns++;
+        linkRoutes(node(label, GraphSink.NodeKind.RETURN), GraphSink.EdgeKind.EXIT);
+    }
+
+    // a break goes to the node after the innermost loop, a continue back to its head, and the route ends
+    // there as at a return. Only for loops are built from events, the other statements a break or continue
+    // can belong to are single nodes around it, so outside a loop it is a plain statement
+    public void breakStatement(CharSequence label) {
+        jump(label, true);
+    }
+
+    public void continueStatement(CharSequence label) {
+        jump(label, false);
+    }
+
+    private void jump(CharSequence label, boolean out) {
+        Frame loop = null;
+        for (Frame frame : frames) {
+            if (frame.loop) {
+                loop = frame;
+                break;
+            }
+        }
+        if (loop == null) {
+            statement(label);
+            return;
+        }
+        int n = node(label, GraphSink.NodeKind.STATEMENT);
+        linkRoutes(n, GraphSink.EdgeKind.NORMAL);
+        if (out)
+            edge(n, loop.exit, GraphSink.EdgeKind.NORMAL);
+        else
+            edge(n, loop.head, GraphSink.EdgeKind.BACK);
+    }
+
+    public void beginCondition(CharSequence label) {
+        int condition = node(label, GraphSink.NodeKind.BRANCH);
+        linkRoutes(condition, GraphSink.EdgeKind.NORMAL);
+        addRoute(condition);
+        branch = condition;
+        frames.push(new Frame(condition, false));
+        decision();
+    }
+
+    // switches from the true to the false branch of the innermost condition, repeated calls are ignored
+    public void elseBranch() {
+        Frame frame = frames.peek();
+        if (frame == null || frame.loop || frame.inElse)
+            return;
+        frame.inElse = true;
+        frame.thenRoutes = Arrays.copyOf(routes, routeCount);
+        routeCount = 0;
+        addRoute(frame.head);
+        branch = frame.head;
+        falseBranch = true;
+    }
+
+    public void endCondition() {
+        Frame frame = frames.pop();
+        int end = node("", GraphSink.NodeKind.JOIN);
+        if (frame.inElse) {
+            // the head is still open when the true branch is empty
+            for (int n : frame.thenRoutes)
+                edge(n, end, n == frame.head ? GraphSink.EdgeKind.TRUE : GraphSink.EdgeKind.NORMAL);
+        } else {
+            edge(frame.head, end, GraphSink.EdgeKind.FALSE);
+        }
+        linkRoutes(end, GraphSink.EdgeKind.NORMAL);
+        addRoute(end);
+    }
+
+    // init and update may be null, the loop body follows the update node as in CFG.toScheme()
+    public void beginLoop(CharSequence init, CharSequence condition, CharSequence update) {
+        if (init != null) {
+            int n = node(init, GraphSink.NodeKind.STATEMENT);
+            linkRoutes(n, GraphSink.EdgeKind.NORMAL);
+            addRoute(n);
+        }
+        int head = node(condition == null ? "" : condition, GraphSink.NodeKind.BRANCH);
+        linkRoutes(head, GraphSink.EdgeKind.NORMAL);
+        addRoute(head);
+        branch = head;
+        Frame frame = new Frame(head, true);
+        frames.push(frame);
+        decision();
+        if (update != null) {
+            int n = node(update, GraphSink.NodeKind.STATEMENT);
+            linkRoutes(n, GraphSink.EdgeKind.NORMAL);
+            addRoute(n);
+        }
+        frame.exit = node("", GraphSink.NodeKind.JOIN);
+    }
+
+    public void endLoop() {
+        Frame frame = frames.pop();
+        linkRoutes(frame.head, GraphSink.EdgeKind.BACK);
+        edge(frame.head, frame.exit, GraphSink.EdgeKind.FALSE);
+        addRoute(frame.exit);
+    }
+
+    private int node(CharSequence label, GraphSink.NodeKind kind) {
+        int id = counter++;
+        nodes++;
+        if (sink != null)
+            sink.node(id, label, kind);
+        return id;
+    }
+
+    private void edge(int from, int to, GraphSink.EdgeKind kind) {
+        edges++;
+        if (sink != null)
+            sink.edge(from, to, kind);
+    }
+
+    // the head just pushed is nested in every frame below it
+    private void decision() {
+        decisions++;
+        nesting = Math.max(nesting, frames.size());
+    }
+
+    private void addRoute(int n) {
+        if (routeCount == routes.length)
+            routes = Arrays.copyOf(routes, routeCount * 2);
+        routes[routeCount++] = n;
+    }
+
+    // links every open route to the node and closes them, the edge from an open branch is its
+    // true or false edge unless it goes back to the loop head
+    private void linkRoutes(int to, GraphSink.EdgeKind kind) {
+        for (int i = 0; i < routeCount; i++) {
+            if (routes[i] == branch && kind != GraphSink.EdgeKind.BACK)
+                edge(routes[i], to, falseBranch ? GraphSink.EdgeKind.FALSE : GraphSink.EdgeKind.TRUE);
+            else
+                edge(routes[i], to, kind);
+        }
+        routeCount = 0;
+        branch = -1;
+        falseBranch = false;
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+// Collects the graph into a FlowGraph. Node ids have to come in one after the other,
+// as FlowGraphBuilder gives them; the first one becomes node 0.
+public class FlowGraphSink implements GraphSink {
+
+    private CharSequence[] labels = new CharSequence[64];
+    private byte[] nodeKinds = new byte[64];
+    private int[] edgeMarks = new int[64];
+    private int nodeCount = 0;
+    private int base = -1;
+
+    private int[] methodStarts = new int[8];
+    private int[] methodEdgeStarts = new int[8];
+    private int methodCount = 0;
+
+    private int[] sources = new int[64];
+    private int[] targets = new int[64];
+    private byte[] edgeKinds = new byte[64];
+    private int edgeCount = 0;
+
+    // the graph of everything received so far
+    public FlowGraph getGraph() {
+        return new FlowGraph(nodeCount, Arrays.copyOf(labels, nodeCount), Arrays.copyOf(nodeKinds, nodeCount),
+                Arrays.copyOf(edgeMarks, nodeCount), methodCount, Arrays.copyOf(methodStarts, methodCount),
+                Arrays.copyOf(methodEdgeStarts, methodCount), edgeCount, Arrays.copyOf(sources, edgeCount),
+                Arrays.copyOf(targets, edgeCount), Arrays.copyOf(edgeKinds, edgeCount));
+    }
+
+    @Override
+    public void beginMethod(CharSequence label) {
+        if (methodCount == methodStarts.length) {
+            methodStarts = Arrays.copyOf(methodStarts, methodCount * 2);
+            methodEdgeStarts = Arrays.copyOf(methodEdgeStarts, methodCount * 2);
+        }
+        methodStarts[methodCount] = nodeCount;
+        methodEdgeStarts[methodCount] = edgeCount;
+        methodCount++;
+    }
+
+    @Override
+    public void node(int id, CharSequence label, NodeKind kind) {
+        if (base < 0)
+            base = id;
+        if (id - base != nodeCount)
+            throw new IllegalArgumentException("node " + id + " out of order");
+        if (nodeCount == labels.length) {
+            labels = Arrays.copyOf(labels, nodeCount * 2);
+            nodeKinds = Arrays.copyOf(nodeKinds, nodeCount * 2);
+            edgeMarks = Arrays.copyOf(edgeMarks, nodeCount * 2);
+        }
+        labels[nodeCount] = label;
+        nodeKinds[nodeCount] = (byte) kind.ordinal();
+        edgeMarks[nodeCount] = edgeCount;
+        nodeCount++;
+    }
+
+    @Override
+    public void edge(int from, int to, EdgeKind kind) {
+        if (edgeCount == sources.length) {
+            sources = Arrays.copyOf(sources, edgeCount * 2);
+            targets = Arrays.copyOf(targets, edgeCount * 2);
+            edgeKinds = Arrays.copyOf(edgeKinds, edgeCount * 2);
+        }
+        sources[edgeCount] = from - base;
+        targets[edgeCount] = to - base;
+        edgeKinds[edgeCount] = (byte) kind.ordinal();
+        edgeCount++;
+    }
+
+    @Override
+    public void endMethod() {
+    }
+}
@@ -0,0 +1,29 @@
+// A dataflow problem whose transfer is out = gen | (in & ~kill), with gen and kill
+// stored like the values, words() words per node in one array each.
+public abstract class GenKillDataflow extends Dataflow {
+
+    private final long[] gen;
+    private final long[] kill;
+
+    protected GenKillDataflow(FlowGraph graph, int method, int bits, Direction direction, boolean union) {
+        super(graph, method, bits, direction, union);
+        gen = new long[size * words()];
+        kill = new long[size * words()];
+    }
+
+    protected void gen(int node, int bit) {
+        gen[(node - start) * words() + (bit >>> 6)] |= 1L << bit;
+    }
+
+    protected void kill(int node, int bit) {
+        kill[(node - start) * words() + (bit >>> 6)] |= 1L << bit;
+    }
+
+    @Override
+    protected void transfer(int node, long[] source, int sourceOffset, long[] target, int targetOffset) {
+        int words = words();
+        int offset = (node - start) * words;
+        for (int w = 0; w < words; w++)
+            target[targetOffset + w] = gen[offset + w] | (source[sourceOffset + w] & ~kill[offset + w]);
+    }
+}
@@ -0,0 +1,19 @@
+// Receives the control-flow graph from FlowGraphBuilder as it is built, one node or edge at a time.
+// Node ids are unique within one builder, a node is always announced before its edges.
+public interface GraphSink {
+
+    // ENTRY is the method itself, BRANCH the head of a condition or loop, JOIN the point after one
+    enum NodeKind {ENTRY, STATEMENT, BRANCH, RETURN, JOIN}
+
+    // TRUE and FALSE leave a branch, BACK goes from the end of a loop body or a continue back to its head,
+    // EXIT goes into a return; an edge that is more than one is BACK before TRUE or FALSE before EXIT
+    enum EdgeKind {NORMAL, TRUE, FALSE, BACK, EXIT}
+
+    void beginMethod(CharSequence label);
+
+    void node(int id, CharSequence label, NodeKind kind);
+
+    void edge(int from, int to, EdgeKind kind);
+
+    void endMethod();
+}
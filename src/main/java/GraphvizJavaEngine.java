@@ -0,0 +1,39 @@
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+
+import java.io.File;
+import java.io.IOException;
+
+// Renders through graphviz-java. Its engines are set up on first use and are not safe
+// to call from several threads, so all instances share one lock; the first instance pays
+// the start-up cost with a trivial graph instead of the first real render.
+public class GraphvizJavaEngine implements RenderEngine {
+
+    private static final Object LOCK = new Object();
+    private static boolean warm = false;
+
+    public GraphvizJavaEngine() {
+        synchronized (LOCK) {
+            if (!warm) {
+                Graphviz.fromString("digraph warmup { a -> b }").render(Format.SVG).toString();
+                warm = true;
+            }
+        }
+    }
+
+    @Override
+    public void render(String dot, int height, File file) throws IOException {
+        synchronized (LOCK) {
+            Graphviz.fromString(dot).height(height).render(Format.PNG).toFile(file);
+        }
+    }
+
+    // a render inside graphviz-java can't be interrupted, it is left to finish
+    @Override
+    public void cancel() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// What BatchParser found for every file of the last runs: the SHA-256 of the file contents
+// and the CFG of the file as DOT text. A file whose contents hash the same as last time
+// doesn't have to be lexed, parsed or walked again, its stored graph is still right.
+// The hashes are kept in index.properties, the graphs in one .dot file per source file.
+// Graphs are stored without the name of their digraph, which is the path the file was given by
+// and can differ from run to run, get() names the graph after the path asked with.
+public class IncrementalIndex {
+
+    private static final String INDEX = "index.properties";
+    // part of every stored hash, to be raised whenever the graphs drawn for the same source change
+    // so that an index of an older version is never taken as up to date
+    static final String VERSION = "2";
+
+    private final File dir;
+    // canonical path of the source -> hash of its contents
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+    public IncrementalIndex(File dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir.toPath());
+        File index = new File(dir, INDEX);
+        if (index.exists()) {
+            Properties properties = new Properties();
+            try (Reader in = Files.newBufferedReader(index.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(in);
+            }
+            for (String path : properties.stringPropertyNames())
+                hashes.put(path, properties.getProperty(path));
+        }
+    }
+
+    public static String hash(File file) throws IOException {
+        return hex(sha256(Files.readAllBytes(file.toPath())));
+    }
+
+    // the stored graph of the file as a digraph named after source.getPath() if it was analysed
+    // with the same contents by the same version, otherwise null
+    public String get(File source, String hash) throws IOException {
+        String path = source.getCanonicalPath();
+        File dot = dotFile(path);
+        if (!(VERSION + ":" + hash).equals(hashes.get(path)) || !dot.exists())
+            return null;
+        StringWriter graph = new StringWriter();
+        DotWriter writer = new DotWriter(graph);
+        writer.beginGraph(source.getPath());
+        graph.write(new String(Files.readAllBytes(dot.toPath()), StandardCharsets.UTF_8));
+        return graph.toString();
+    }
+
+    // dot is one digraph, its first line with the name is left out
+    public void put(File source, String hash, String dot) throws IOException {
+        String path = source.getCanonicalPath();
+        File file = dotFile(path);
+        // written aside and moved, a run that dies halfway never leaves half a graph behind
+        File temp = new File(dir, file.getName() + ".tmp");
+        Files.write(temp.toPath(), dot.substring(dot.indexOf('\n') + 1).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        hashes.put(path, VERSION + ":" + hash);
+    }
+
+    // writes the hashes, files that no longer exist are dropped with their graphs
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            if (new File(entry.getKey()).exists()) {
+                properties.setProperty(entry.getKey(), entry.getValue());
+            } else {
+                hashes.remove(entry.getKey());
+                dotFile(entry.getKey()).delete();
+            }
+        }
+        File temp = new File(dir, INDEX + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            properties.store(out, "content hashes of analysed files");
+        }
+        Files.move(temp.toPath(), new File(dir, INDEX).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // named by the hash of the path, paths can be longer than a file name may be
+    private File dotFile(String path) {
+        return new File(dir, hex(sha256(path.getBytes(StandardCharsets.UTF_8))) + ".dot");
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -0,0 +1,55 @@
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.Arrays;
+
+// ParseTreeWalker that fires the same events in the same order without recursion,
+// the path from the root to the current node is kept in arrays instead of on the Java stack.
+public class IterativeParseTreeWalker extends ParseTreeWalker {
+    public static final IterativeParseTreeWalker DEFAULT = new IterativeParseTreeWalker();
+
+    @Override
+    public void walk(ParseTreeListener listener, ParseTree t) {
+        if (!(t instanceof RuleNode)) {
+            visit(listener, t);
+            return;
+        }
+        RuleNode[] path = new RuleNode[32];
+        int[] next = new int[32];
+        int depth = 0;
+        path[0] = (RuleNode) t;
+        enterRule(listener, path[0]);
+
+        while (depth >= 0) {
+            RuleNode r = path[depth];
+            if (next[depth] == r.getChildCount()) {
+                exitRule(listener, r);
+                path[depth--] = null;
+                continue;
+            }
+            ParseTree child = r.getChild(next[depth]++);
+            if (!(child instanceof RuleNode)) {
+                visit(listener, child);
+                continue;
+            }
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+                next = Arrays.copyOf(next, path.length);
+            }
+            path[depth] = (RuleNode) child;
+            next[depth] = 0;
+            enterRule(listener, path[depth]);
+        }
+    }
+
+    private static void visit(ParseTreeListener listener, ParseTree t) {
+        if (t instanceof ErrorNode)
+            listener.visitErrorNode((ErrorNode) t);
+        else if (t instanceof TerminalNode)
+            listener.visitTerminal((TerminalNode) t);
+    }
+}
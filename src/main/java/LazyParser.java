@@ -0,0 +1,297 @@
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+// Finds the methods of a file without parsing it: the file is only lexed and the token stream skimmed,
+// a method body is the braces after a parameter list at the level of a class body
+// and a method without one ends in ';' right after it.
+// Bodies are parsed one at a time when their CFG is asked for, the rest of the file never goes
+// through Java8Parser. Methods of anonymous classes in field initializers and of local classes
+// are not listed, their bodies are skipped with the code around them.
+public class LazyParser {
+
+    public static class Method {
+        private final int index;
+        private final String name;
+        private final TokenLabel header;
+        private final int bodyStart;
+        private final int bodyStop;
+
+        private Method(int index, String name, TokenLabel header, int bodyStart, int bodyStop) {
+            this.index = index;
+            this.name = name;
+            this.header = header;
+            this.bodyStart = bodyStart;
+            this.bodyStop = bodyStop;
+        }
+
+        // position of the method in the file, starting at 0
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // everything from the first modifier to the end of the throws clause, the label of the method node
+        public TokenLabel getHeader() {
+            return header;
+        }
+
+        public boolean hasBody() {
+            return bodyStart >= 0;
+        }
+
+        // token indexes of the braces around the body, -1 for abstract and native methods
+        public int getBodyStart() {
+            return bodyStart;
+        }
+
+        public int getBodyStop() {
+            return bodyStop;
+        }
+
+        @Override
+        public String toString() {
+            return header.toString();
+        }
+    }
+
+    // the declaration being read at one level of type bodies
+    private static class Level {
+        // elements of an annotation type look like methods without a body
+        final boolean annotationBody;
+        // still in the constants of an enum body
+        boolean constants;
+        int start;
+        int parens;
+        int name;
+        boolean type;
+        boolean isEnum;
+        boolean isAnnotation;
+        boolean call;
+        boolean assign;
+
+        Level(boolean enumBody, boolean annotationBody) {
+            this.annotationBody = annotationBody;
+            constants = enumBody;
+            reset();
+        }
+
+        void reset() {
+            start = -1;
+            parens = 0;
+            name = -1;
+            type = false;
+            isEnum = false;
+            isAnnotation = false;
+            call = false;
+            assign = false;
+        }
+    }
+
+    private final File source;
+    private final CommonTokenStream tokens;
+    private final List<Method> methods = new ArrayList<>();
+    private boolean twoStage = true;
+
+    public LazyParser(File source) throws IOException {
+        this.source = source;
+        Java8Lexer lexer = Parser.LEXER.get();
+        lexer.setInputStream(new MappedCharStream(source));
+        tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+        skim();
+    }
+
+    public void setTwoStage(boolean twoStage) {
+        this.twoStage = twoStage;
+    }
+
+    public File getSource() {
+        return source;
+    }
+
+    public List<Method> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    // all overloads of the name
+    public List<Method> getMethods(String name) {
+        List<Method> named = new ArrayList<>();
+        for (Method method : methods) {
+            if (method.getName().equals(name))
+                named.add(method);
+        }
+        return named;
+    }
+
+    private void skim() {
+        Deque<Level> levels = new ArrayDeque<>();
+        levels.push(new Level(false, false));
+        int last = -1;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getChannel() != Token.DEFAULT_CHANNEL)
+                continue;
+            int type = token.getType();
+            if (type == Token.EOF)
+                break;
+            Level level = levels.peek();
+            if (type == Java8Parser.RBRACE && level.parens == 0) {
+                // end of a type body
+                if (levels.size() > 1)
+                    levels.pop();
+                levels.peek().reset();
+                last = i;
+                continue;
+            }
+            if (level.start < 0)
+                level.start = i;
+            switch (type) {
+                case Java8Parser.LPAREN:
+                    if (level.parens++ == 0) {
+                        // the last one before the body is the parameter list
+                        level.call = true;
+                        level.name = last;
+                    }
+                    break;
+                case Java8Parser.RPAREN:
+                    level.parens--;
+                    break;
+                case Java8Parser.ASSIGN:
+                    if (level.parens == 0)
+                        level.assign = true;
+                    break;
+                case Java8Parser.DEFAULT:
+                    // the default value of an annotation element, not the modifier of an interface method
+                    if (level.parens == 0 && level.call)
+                        level.assign = true;
+                    break;
+                case Java8Parser.CLASS:
+                case Java8Parser.INTERFACE:
+                case Java8Parser.ENUM:
+                    if (level.parens == 0) {
+                        level.type = true;
+                        level.isEnum = type == Java8Parser.ENUM;
+                        level.isAnnotation = last >= 0 && tokens.get(last).getType() == Java8Parser.AT;
+                    }
+                    break;
+                case Java8Parser.SEMI:
+                    if (level.parens == 0) {
+                        if (level.call && !level.assign && !level.constants && !level.annotationBody)
+                            addMethod(level, last, -1, -1);
+                        level.reset();
+                        level.constants = false;
+                    }
+                    break;
+                case Java8Parser.COMMA:
+                    if (level.parens == 0 && level.constants)
+                        level.reset();
+                    break;
+                case Java8Parser.LBRACE:
+                    if (level.parens > 0)
+                        break;
+                    if (level.type || level.constants) {
+                        // a class body, or the body of an enum constant
+                        levels.push(new Level(level.type && level.isEnum, level.type && level.isAnnotation));
+                        level.reset();
+                        break;
+                    }
+                    int close = matchingBrace(i);
+                    if (level.call && !level.assign)
+                        addMethod(level, last, i, close);
+                    // an initializer block or a method ends here, a field initializer at its ';'
+                    if (!level.assign)
+                        level.reset();
+                    i = close;
+                    break;
+            }
+            last = i;
+        }
+    }
+
+    private void addMethod(Level level, int headerStop, int bodyStart, int bodyStop) {
+        methods.add(new Method(methods.size(), tokens.get(level.name).getText(),
+                new TokenLabel(tokens, level.start, headerStop), bodyStart, bodyStop));
+    }
+
+    private int matchingBrace(int open) {
+        int depth = 0;
+        int i = open;
+        for (; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getType() == Token.EOF)
+                return i - 1;
+            if (token.getChannel() != Token.DEFAULT_CHANNEL)
+                continue;
+            if (token.getType() == Java8Parser.LBRACE)
+                depth++;
+            else if (token.getType() == Java8Parser.RBRACE && --depth == 0)
+                return i;
+        }
+        return i - 1;
+    }
+
+    // bodies are parsed as constructorBody, which also accepts this(...) and super(...) in front
+    public ParserRuleContext parseBody(Method method) {
+        Java8Parser parser = Parser.PARSER.get();
+        parser.setTokenStream(tokens);
+        parser.setBuildParseTree(true);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.removeErrorListeners();
+        parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+
+        if (twoStage) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.removeErrorListeners();
+            try {
+                // setTokenStream() rewinds the stream, the body starts somewhere in the middle
+                tokens.seek(method.getBodyStart());
+                return parser.constructorBody();
+            } catch (ParseCancellationException e) {
+                parser.reset();
+                parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        tokens.seek(method.getBodyStart());
+        return parser.constructorBody();
+    }
+
+    public FlowGraphBuilder buildFlowGraph(Method method, GraphSink sink) {
+        return buildFlowGraph(method, new FlowGraphBuilder(sink));
+    }
+
+    // adds the method to the builder, node ids go on from the methods it already has
+    public FlowGraphBuilder buildFlowGraph(Method method, FlowGraphBuilder builder) {
+        if (!method.hasBody()) {
+            builder.beginMethod(method.getHeader());
+            builder.endMethod();
+            return builder;
+        }
+        ParserRuleContext body = parseBody(method);
+        builder.beginMethod(method.getHeader());
+        IterativeParseTreeWalker.DEFAULT.walk(new CFGListener(tokens, builder), body);
+        builder.endMethod();
+        return builder;
+    }
+}
@@ -0,0 +1,37 @@
+// Variables live before and after every node: a backward may problem with a bit per variable
+// of the DefUse, used before it is defined again on some path from the node on.
+// Only definitions that surely happen end the life of a variable.
+public class LiveVariables extends GenKillDataflow {
+
+    private final DefUse defUse;
+
+    public LiveVariables(FlowGraph graph, int method) {
+        this(graph, method, new DefUse(graph, method));
+    }
+
+    public LiveVariables(FlowGraph graph, int method, DefUse defUse) {
+        super(graph, method, defUse.getVariableCount(), Direction.BACKWARD, true);
+        this.defUse = defUse;
+        for (int node = start; node < start + size; node++) {
+            for (int i = defUse.useStart(node); i < defUse.useEnd(node); i++)
+                gen(node, defUse.use(i));
+            for (int i = defUse.defStart(node); i < defUse.defEnd(node); i++) {
+                if (!defUse.isMayDef(i))
+                    kill(node, defUse.def(i));
+            }
+        }
+        solve();
+    }
+
+    public DefUse getDefUse() {
+        return defUse;
+    }
+
+    public boolean isLiveIn(int node, int variable) {
+        return in(node, variable);
+    }
+
+    public boolean isLiveOut(int node, int variable) {
+        return out(node, variable);
+    }
+}
@@ -1,26 +1,203 @@
-import org.antlr.v4.runtime.ANTLRFileStream;
-import org.antlr.v4.runtime.BailErrorStrategy;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.DiagnosticErrorListener;
-import org.antlr.v4.runtime.Lexer;
-import org.antlr.v4.runtime.ParserRuleContext;
-import org.antlr.v4.runtime.atn.LexerATNSimulator;
-import org.antlr.v4.runtime.atn.PredictionMode;
-
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.file.*;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class Main {
     public static void main(String[] args) {
         Parser parser = null;
+        List<File> paths = new ArrayList<>();
+        boolean twoStage = true;
+        boolean direct = false;
+        boolean buildTree = true;
+        boolean coalesce = true;
+        boolean dataflow = false;
+        boolean metrics = false;
+        String dot = null;
+        String cache = null;
+        long cacheSize = 256;
+        String incremental = null;
+        Set<String> methods = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long stackSize = 0;
+        Set<String> flags = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--"))
+                flags.add(args[i]);
+            if (args[i].equals("--ll"))
+                twoStage = false;
+            else if (args[i].equals("--direct"))
+                direct = true;
+            else if (args[i].equals("--no-tree"))
+                buildTree = false;
+            else if (args[i].equals("--no-coalesce"))
+                coalesce = false;
+            else if (args[i].equals("--dataflow"))
+                dataflow = true;
+            else if (args[i].equals("--metrics"))
+                metrics = true;
+            else if (args[i].equals("--dot"))
+                dot = value(args, i++);
+            else if (args[i].equals("--cache"))
+                cache = value(args, i++);
+            else if (args[i].equals("--cache-size"))
+                cacheSize = number(args, i++);
+            else if (args[i].equals("--incremental"))
+                incremental = value(args, i++);
+            else if (args[i].equals("--method")) {
+                if (methods == null)
+                    methods = new HashSet<>();
+                methods.add(value(args, i++));
+            } else if (args[i].equals("--threads"))
+                threads = (int) Math.min(number(args, i++), Integer.MAX_VALUE);
+            else if (args[i].equals("--stack-size"))
+                stackSize = number(args, i++);
+            else if (args[i].startsWith("--"))
+                usage(args[i] + ": unknown flag");
+            else
+                paths.add(new File(args[i]));
+        }
+        if (paths.isEmpty())
+            paths.add(new File("TestMainClass.java"));
+
+        // flags the chosen mode would not look at are refused instead of being dropped silently.
+        // Of the single-file modes --dataflow comes first, then --metrics, then the drawn ones
+        boolean batchMode = paths.size() > 1 || paths.get(0).isDirectory() || dot != null || incremental != null;
+        List<String> ignored = new ArrayList<>();
+        String mode;
+        if (batchMode) {
+            ignored.addAll(Arrays.asList("--method", "--cache", "--cache-size", "--direct", "--dataflow"));
+            mode = "for several files, a directory, --dot or --incremental";
+            // metrics are counted without a graph
+            if (metrics) {
+                ignored.addAll(Arrays.asList("--dot", "--incremental", "--no-coalesce"));
+                mode = "with --metrics " + mode;
+            }
+        } else {
+            ignored.addAll(Arrays.asList("--threads", "--stack-size"));
+            mode = "for a single file";
+            if (dataflow) {
+                // the dataflow is solved on the CFG tree, a node per statement
+                ignored.addAll(Arrays.asList("--metrics", "--method", "--cache", "--cache-size", "--direct",
+                        "--no-coalesce", "--no-tree"));
+                mode = "with --dataflow " + mode;
+            } else if (metrics) {
+                ignored.addAll(Arrays.asList("--method", "--cache", "--cache-size", "--direct", "--no-coalesce"));
+                mode = "with --metrics " + mode;
+            } else if (methods != null) {
+                // the wanted bodies are parsed on their own, straight into the graph
+                ignored.addAll(Arrays.asList("--direct", "--no-tree"));
+                mode = "with --method " + mode;
+            } else if (!buildTree) {
+                ignored.add("--direct");
+                mode = "with --no-tree " + mode;
+            }
+        }
+        ignored.retainAll(flags);
+        if (!ignored.isEmpty())
+            usage(String.join(", ", ignored) + ": not used " + mode);
+        if (cache == null && flags.contains("--cache-size"))
+            usage("--cache-size: not used without --cache");
+
+        if (batchMode) {
+            BatchParser batch = new BatchParser(threads);
+            // --stack-size is in megabytes
+            batch.setStackSize(stackSize << 20);
+            batch.setTwoStage(twoStage);
+            batch.setBuildTree(buildTree);
+            batch.setCoalesce(coalesce);
+            batch.setMetrics(metrics);
+            try (Writer out = dot == null ? null : Files.newBufferedWriter(Paths.get(dot))) {
+                batch.setDotWriter(out);
+                if (incremental != null)
+                    batch.setIncremental(new IncrementalIndex(new File(incremental)));
+                for (BatchParser.Result result : batch.parse(paths)) {
+                    System.out.println(result);
+                    for (MethodMetrics method : result.getMetrics())
+                        System.out.println("    " + method);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        String path = paths.get(0).getPath();
         try {
-            parser = new Parser("TestMainClass.java");
+            parser = new Parser(path);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
+            return;
+        }
+        parser.setTwoStage(twoStage);
+        parser.setDirect(direct);
+        parser.setBuildTree(buildTree);
+        parser.setCoalesce(coalesce);
+        parser.setMethods(methods);
+        if (dataflow) {
+            try {
+                parser.printDataflow(System.out);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (metrics) {
+            try {
+                parser.metrics(System.out::println);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (cache != null) {
+            try {
+                SchemeRenderer renderer = new SchemeRenderer();
+                // --cache-size is in megabytes
+                renderer.setCache(new RenderCache(new File(cache), cacheSize << 20));
+                parser.setRenderer(renderer);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
         }
         parser.parse();
     }
 
+    // the argument after the flag at i
+    private static String value(String[] args, int i) {
+        if (i + 1 == args.length)
+            usage(args[i] + ": needs a value");
+        return args[i + 1];
+    }
+
+    private static long number(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            long number = Long.parseLong(value);
+            if (number > 0)
+                return number;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        usage(args[i] + ": " + value + " is not a positive number");
+        return 0;
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("usage: Main [--ll] [--no-coalesce] [--dataflow | --metrics | --method name...");
+        System.err.println("            | --no-tree | --direct] [--cache dir [--cache-size mb]] [file]");
+        System.err.println("       Main [--ll] [--no-tree] [--no-coalesce] [--metrics] [--dot file]");
+        System.err.println("            [--incremental dir] [--threads n] [--stack-size mb] file|dir...");
+        System.exit(2);
+    }
+
 }
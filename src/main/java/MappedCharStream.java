@@ -0,0 +1,179 @@
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// CharStream over a memory-mapped source file, in place of ANTLRFileStream which reads the file
+// through a Reader into a char[] of its own.
+// Pure ASCII files, nearly all Java sources, are lexed straight from the mapping: a byte is a char,
+// nothing is decoded or copied and workers reading the same files share the pages of the OS cache.
+// Anything else is decoded once: by its byte order mark if it has one, as UTF-8 if it is valid UTF-8,
+// and with the platform charset like ANTLRFileStream otherwise.
+public class MappedCharStream implements CharStream {
+
+    private final String name;
+    private final Charset charset;
+    // the ASCII text, null when the file had to be decoded
+    private final ByteBuffer bytes;
+    // the decoded text, null for ASCII
+    private final char[] chars;
+    private final int n;
+    private int p = 0;
+
+    public MappedCharStream(File file) throws IOException {
+        name = file.getCanonicalPath();
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large to map");
+            // the mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        Charset bom = bom(mapped);
+        if (bom != null) {
+            charset = bom;
+            mapped.position(bom == StandardCharsets.UTF_8 ? 3 : 2);
+            bytes = null;
+            chars = decode(mapped.slice(), charset, false);
+        } else if (isAscii(mapped)) {
+            charset = StandardCharsets.US_ASCII;
+            bytes = mapped;
+            chars = null;
+        } else {
+            char[] utf8;
+            try {
+                utf8 = decode(mapped.duplicate(), StandardCharsets.UTF_8, true);
+            } catch (CharacterCodingException e) {
+                utf8 = null;
+            }
+            charset = utf8 != null ? StandardCharsets.UTF_8 : Charset.defaultCharset();
+            bytes = null;
+            chars = utf8 != null ? utf8 : decode(mapped.duplicate(), charset, false);
+        }
+        n = bytes != null ? bytes.limit() : chars.length;
+    }
+
+    // the charset the file was read with
+    public Charset getCharset() {
+        return charset;
+    }
+
+    private static Charset bom(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        if (limit >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF)
+            return StandardCharsets.UTF_8;
+        if (limit >= 2 && (buffer.get(0) & 0xFF) == 0xFE && (buffer.get(1) & 0xFF) == 0xFF)
+            return StandardCharsets.UTF_16BE;
+        if (limit >= 2 && (buffer.get(0) & 0xFF) == 0xFF && (buffer.get(1) & 0xFF) == 0xFE)
+            return StandardCharsets.UTF_16LE;
+        return null;
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        for (int i = 0, limit = buffer.limit(); i < limit; i++) {
+            if (buffer.get(i) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    // strict decoding fails on malformed input, otherwise it is replaced like a Reader does
+    private static char[] decode(ByteBuffer buffer, Charset charset, boolean strict)
+            throws CharacterCodingException {
+        CodingErrorAction action = strict ? CodingErrorAction.REPORT : CodingErrorAction.REPLACE;
+        CharBuffer decoded = charset.newDecoder().onMalformedInput(action).onUnmappableCharacter(action)
+                .decode(buffer);
+        char[] text = new char[decoded.remaining()];
+        decoded.get(text);
+        return text;
+    }
+
+    private int charAt(int i) {
+        return bytes != null ? bytes.get(i) : chars[i];
+    }
+
+    @Override
+    public void consume() {
+        if (p >= n)
+            throw new IllegalStateException("cannot consume EOF");
+        p++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0)
+            return 0;
+        if (i < 0) {
+            // LA(-1) is the char before the current one
+            i++;
+            if (p + i - 1 < 0)
+                return IntStream.EOF;
+        }
+        if (p + i - 1 >= n)
+            return IntStream.EOF;
+        return charAt(p + i - 1);
+    }
+
+    // the whole file is there, marks don't have to keep anything
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.min(index, n);
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public String getSourceName() {
+        return name;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, n - 1);
+        if (start >= n || stop < start)
+            return "";
+        int count = stop - start + 1;
+        if (chars != null)
+            return new String(chars, start, count);
+        byte[] text = new byte[count];
+        ByteBuffer view = bytes.duplicate();
+        view.position(start);
+        view.get(text);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, n - 1));
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Keeps every method as a DOT digraph of its own, so methods can be rendered one by one
+// instead of the whole file as one picture. Node ids start at 0 in every method,
+// so the same method gives the same text wherever it is in the file.
+public class MethodGraphs implements GraphSink {
+
+    public static class Method {
+        private final int index;
+        private final String label;
+        private final String dot;
+        private final int nodes;
+
+        private Method(int index, String label, String dot, int nodes) {
+            this.index = index;
+            this.label = label;
+            this.dot = dot;
+            this.nodes = nodes;
+        }
+
+        // position of the method in the file, starting at 0
+        public int getIndex() {
+            return index;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // method name as written before the parameter list
+        public String getName() {
+            int end = label.indexOf('(');
+            String header = (end < 0 ? label : label.substring(0, end)).trim();
+            return header.substring(header.lastIndexOf(' ') + 1);
+        }
+
+        public String getDot() {
+            return dot;
+        }
+
+        public int getNodeCount() {
+            return nodes;
+        }
+    }
+
+    private final List<Method> methods = new ArrayList<>();
+    private StringWriter buffer;
+    private DotWriter dot;
+    private String label;
+    private int nodes;
+    private int base;
+
+    public List<Method> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    @Override
+    public void beginMethod(CharSequence label) {
+        this.label = label.toString();
+        buffer = new StringWriter();
+        dot = new DotWriter(buffer);
+        dot.beginGraph(this.label);
+        nodes = 0;
+        base = -1;
+    }
+
+    @Override
+    public void node(int id, CharSequence label, NodeKind kind) {
+        if (base < 0)
+            base = id;
+        dot.node(id - base, label, kind);
+        nodes++;
+    }
+
+    @Override
+    public void edge(int from, int to, EdgeKind kind) {
+        dot.edge(from - base, to - base, kind);
+    }
+
+    @Override
+    public void endMethod() {
+        dot.endGraph();
+        methods.add(new Method(methods.size(), label, buffer.toString(), nodes));
+        buffer = null;
+        dot = null;
+    }
+}
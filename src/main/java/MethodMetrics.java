@@ -0,0 +1,58 @@
+// Size and complexity of one method, counted by FlowGraphBuilder while it goes through the method.
+// Nodes and edges are those of the graph with a node per statement, as before BlockCoalescer.
+// Complexity is the cyclomatic complexity as decisions + 1, every condition and loop head being
+// one decision; E - N + 2 would count every return as one more way out of the method.
+// Nesting is the depth of the innermost condition or loop, 1 for one that is in no other.
+public class MethodMetrics {
+
+    private final String name;
+    private final int nodes;
+    private final int edges;
+    private final int decisions;
+    private final int nesting;
+    private final int returns;
+
+    MethodMetrics(String name, int nodes, int edges, int decisions, int nesting, int returns) {
+        this.name = name;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.decisions = decisions;
+        this.nesting = nesting;
+        this.returns = returns;
+    }
+
+    // the header of the method as its entry node shows it
+    public String getName() {
+        return name;
+    }
+
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    public int getEdgeCount() {
+        return edges;
+    }
+
+    public int getDecisionCount() {
+        return decisions;
+    }
+
+    public int getComplexity() {
+        return decisions + 1;
+    }
+
+    public int getNesting() {
+        return nesting;
+    }
+
+    public int getReturnCount() {
+        return returns;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: complexity %d, %d nodes, %d edges, nesting %d, %d returns",
+                name, getComplexity(), nodes, edges, nesting, returns);
+    }
+}
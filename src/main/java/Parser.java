@@ -1,37 +1,130 @@
-import org.antlr.v4.runtime.ANTLRFileStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import parsers.Java8BaseListener;
 import parsers.Java8Lexer;
 import parsers.Java8Parser;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class Parser {
+    public enum Stage {SLL, LL}
+
+    // one lexer and parser per thread, pointed at the next file instead of created again for it
+    static final ThreadLocal<Java8Lexer> LEXER = ThreadLocal.withInitial(() -> new Java8Lexer(null));
+    static final ThreadLocal<Java8Parser> PARSER =
+            ThreadLocal.withInitial(() -> Java8Prediction.install(new Java8Parser(null)));
+
     private File source;
+    private boolean twoStage = true;
+    private boolean direct = false;
+    private boolean buildTree = true;
+    private boolean coalesce = true;
+    private Stage stage;
+    private CommonTokenStream tokens;
+    private SchemeRenderer renderer;
+    private Set<String> methods;
 
     public Parser(String path) throws FileNotFoundException {
-        source = new File(path);
+        this(new File(path));
+    }
+
+    public Parser(File file) throws FileNotFoundException {
+        source = file;
         if (!source.exists()) {
             System.out.println("File doesn't exist");
             throw new FileNotFoundException();
         }
     }
 
-    public void parse() {
-        try {
-            Lexer lexer = new Java8Lexer(new ANTLRFileStream(source.getCanonicalPath()));
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            Java8Parser parser = new Java8Parser(tokens);
+    public void setTwoStage(boolean twoStage) {
+        this.twoStage = twoStage;
+    }
+
+    // build the graph with CFGListener while walking the parse tree instead of through a CFG tree copy
+    public void setDirect(boolean direct) {
+        this.direct = direct;
+    }
+
+    // without a tree the graph is built by CFGListener while Java8Parser runs and goes straight to the sink,
+    // only the tokens of the current method are held. Parsing is full LL then, an SLL stage that fails
+    // can't be taken back once its nodes are out
+    public void setBuildTree(boolean buildTree) {
+        this.buildTree = buildTree;
+    }
+
+    // straight-line statements of the drawn and written graphs are merged into one node per
+    // basic block, false for a node per statement. buildFlowGraph() leaves this to its sink
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    // renderer parse() draws the methods with, a default one when not set
+    public void setRenderer(SchemeRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    // draw only the methods with these names, their bodies are the only code parse() parses.
+    // null for all methods
+    public void setMethods(Set<String> methods) {
+        this.methods = methods;
+    }
 
-            parser.setBuildParseTree(true);
+    // prediction mode the last parse() finished in, null before the first parse
+    public Stage getStage() {
+        return stage;
+    }
 
-            ParserRuleContext tree = parser.compilationUnit();
-            CFG ast = new CFG(tree);
+    public void parse() {
+        try {
+            File dir = new File("scheme", source.getName());
+            if (renderer == null)
+                renderer = new SchemeRenderer();
+            if (methods != null) {
+                LazyParser lazy = new LazyParser(source);
+                lazy.setTwoStage(twoStage);
+                MethodGraphs graphs = new MethodGraphs();
+                FlowGraphBuilder builder = new FlowGraphBuilder(sink(graphs));
+                for (LazyParser.Method method : lazy.getMethods()) {
+                    if (methods.contains(method.getName()))
+                        lazy.buildFlowGraph(method, builder);
+                }
+                System.out.println(source.getName() + ": " + graphs.getMethods().size() + " of "
+                        + lazy.getMethods().size() + " methods parsed");
+                renderer.render(graphs.getMethods(), dir);
+                return;
+            }
+            if (!buildTree) {
+                MethodGraphs graphs = new MethodGraphs();
+                parseTreeFree(new FlowGraphBuilder(sink(graphs)));
+                System.out.println(source.getName() + ": parsed in " + stage + " stage without a tree");
+                renderer.render(graphs.getMethods(), dir);
+                return;
+            }
+            ParserRuleContext tree = parseCompilationUnit();
+            System.out.println(source.getName() + ": parsed in " + stage + " stage");
+            if (direct) {
+                MethodGraphs graphs = new MethodGraphs();
+                CFGListener.build(tree, tokens, sink(graphs));
+                renderer.render(graphs.getMethods(), dir);
+                return;
+            }
+            CFG ast = new CFG(tree, tokens);
 
 
-            ast.toScheme();
+            ast.toScheme(renderer, dir, coalesce);
 
        //  System.out.println(ast);
         } catch (IOException e) {
@@ -39,4 +132,178 @@ public class Parser {
             e.printStackTrace();   // so we can get stack trace
         }
     }
+
+    public File getSource() {
+        return source;
+    }
+
+    public CFG buildCFG() throws IOException {
+        ParserRuleContext tree = parseCompilationUnit();
+        return new CFG(tree, tokens);
+    }
+
+    // every node of every method with the variables live before it and the definitions reaching it,
+    // a definition written as variable@node
+    public void printDataflow(PrintStream out) throws IOException {
+        FlowGraph graph = buildCFG().toFlowGraph();
+        for (int m = 0; m < graph.getMethodCount(); m++) {
+            DefUse defUse = new DefUse(graph, m);
+            LiveVariables live = new LiveVariables(graph, m, defUse);
+            ReachingDefinitions reaching = new ReachingDefinitions(graph, m, defUse);
+            out.println(graph.getLabel(graph.getMethodStart(m)));
+            for (int n = graph.getMethodStart(m); n < graph.getMethodEnd(m); n++) {
+                StringBuilder line = new StringBuilder();
+                line.append(String.format("%6d  %-40s live:", n, graph.getLabel(n).toString().replace('\n', ' ')));
+                for (int v = 0; v < defUse.getVariableCount(); v++) {
+                    if (live.isLiveIn(n, v))
+                        line.append(' ').append(defUse.getVariable(v));
+                }
+                line.append("  reaching:");
+                for (int d = 0; d < reaching.getDefinitionCount(); d++) {
+                    if (reaching.reaches(d, n))
+                        line.append(' ').append(defUse.getVariable(reaching.getDefinitionVariable(d)))
+                                .append('@').append(reaching.getDefinitionNode(d));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    // the metrics of every method as its CFG is built, nothing is drawn or kept; with setBuildTree(false)
+    // they come straight from the parser without a tree, both ways count the same graph
+    public void metrics(Consumer<MethodMetrics> out) throws IOException {
+        if (!buildTree) {
+            parseTreeFree(new FlowGraphBuilder(null, out));
+            return;
+        }
+        buildCFG().metrics(out);
+    }
+
+    public FlowGraphBuilder buildFlowGraph(GraphSink sink) throws IOException {
+        if (!buildTree)
+            return parseTreeFree(new FlowGraphBuilder(sink));
+        ParserRuleContext tree = parseCompilationUnit();
+        return CFGListener.build(tree, tokens, sink);
+    }
+
+    // writes the CFG of the file as one DOT digraph named after it, straight from the parse tree
+    public void writeDot(DotWriter dot) throws IOException {
+        if (!buildTree) {
+            dot.beginGraph(source.getPath());
+            parseTreeFree(new FlowGraphBuilder(sink(dot)));
+            dot.endGraph();
+            return;
+        }
+        ParserRuleContext tree = parseCompilationUnit();
+        dot.beginGraph(source.getPath());
+        CFGListener.build(tree, tokens, sink(dot));
+        dot.endGraph();
+    }
+
+    private GraphSink sink(GraphSink sink) {
+        return coalesce ? new BlockCoalescer(sink) : sink;
+    }
+
+    private FlowGraphBuilder parseTreeFree(FlowGraphBuilder builder) throws IOException {
+        Java8Lexer lexer = LEXER.get();
+        lexer.setInputStream(new MappedCharStream(source));
+        UnbufferedTokenStream<Token> stream = new UnbufferedTokenStream<>(lexer);
+        Java8Parser parser = PARSER.get();
+        parser.setTokenStream(stream);
+        parser.setBuildParseTree(false);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.removeErrorListeners();
+        parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+        // exit events go to the listeners last to first, the window closes after CFGListener is done
+        parser.addParseListener(new MethodWindow(stream));
+        parser.addParseListener(new CFGListener(stream, builder));
+        try {
+            parser.compilationUnit();
+        } finally {
+            parser.removeParseListeners();
+        }
+        tokens = null;
+        stage = Stage.LL;
+        return builder;
+    }
+
+    public ParserRuleContext parseCompilationUnit() throws IOException {
+        Java8Lexer lexer = LEXER.get();
+        lexer.setInputStream(new MappedCharStream(source));
+        // the token stream stays with the file, the labels of its CFG read their text from it
+        tokens = new CommonTokenStream(lexer);
+        Java8Parser parser = PARSER.get();
+        parser.setTokenStream(tokens);
+
+        // undo what the last file of this thread changed
+        parser.setBuildParseTree(true);
+        parser.removeParseListeners();
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.removeErrorListeners();
+        parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+
+        if (twoStage) {
+            // SLL, with LL at the decisions Java8Prediction knows SLL gets wrong, is enough for every file
+            // we have measured, errors there are not reported but cause the file to be parsed again with full LL below
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.removeErrorListeners();
+            try {
+                ParserRuleContext tree = parser.compilationUnit();
+                stage = Stage.SLL;
+                return tree;
+            } catch (ParseCancellationException e) {
+                parser.reset();
+                parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        ParserRuleContext tree = parser.compilationUnit();
+        stage = Stage.LL;
+        return tree;
+    }
+
+    // keeps the tokens of a method in the unbuffered stream from its first token to its last,
+    // the labels of its statements are read from them. Outside methods tokens are dropped as they are consumed
+    private static class MethodWindow extends Java8BaseListener {
+        private final UnbufferedTokenStream<Token> tokens;
+        private final Deque<Integer> marks = new ArrayDeque<>();
+
+        MethodWindow(UnbufferedTokenStream<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void enterMethodDeclaration(Java8Parser.MethodDeclarationContext ctx) {
+            marks.push(tokens.mark());
+        }
+
+        @Override
+        public void exitMethodDeclaration(Java8Parser.MethodDeclarationContext ctx) {
+            tokens.release(marks.pop());
+        }
+
+        @Override
+        public void enterInterfaceMethodDeclaration(Java8Parser.InterfaceMethodDeclarationContext ctx) {
+            marks.push(tokens.mark());
+        }
+
+        @Override
+        public void exitInterfaceMethodDeclaration(Java8Parser.InterfaceMethodDeclarationContext ctx) {
+            tokens.release(marks.pop());
+        }
+
+        @Override
+        public void enterConstructorDeclaration(Java8Parser.ConstructorDeclarationContext ctx) {
+            marks.push(tokens.mark());
+        }
+
+        @Override
+        public void exitConstructorDeclaration(Java8Parser.ConstructorDeclarationContext ctx) {
+            tokens.release(marks.pop());
+        }
+    }
 }
@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+// Definitions that reach every node: a forward may problem with a bit per definition,
+// a definition being a node together with a variable it defines. Parameters are defined
+// by the entry node.
+public class ReachingDefinitions extends GenKillDataflow {
+
+    private final DefUse defUse;
+    private final int[] definitionNodes;
+    private final int[] definitionVariables;
+
+    public ReachingDefinitions(FlowGraph graph, int method) {
+        this(graph, method, new DefUse(graph, method));
+    }
+
+    public ReachingDefinitions(FlowGraph graph, int method, DefUse defUse) {
+        super(graph, method, count(graph, method, defUse), Direction.FORWARD, true);
+        this.defUse = defUse;
+        int count = bits();
+        definitionNodes = new int[count];
+        definitionVariables = new int[count];
+        boolean[] may = new boolean[count];
+        // definitions of every variable, to kill them all where one of them is made for sure
+        int variables = defUse.getVariableCount();
+        int[] offsets = new int[variables + 1];
+        int d = 0;
+        for (int node = start; node < start + size; node++) {
+            for (int i = defUse.defStart(node); i < defUse.defEnd(node); i++) {
+                definitionNodes[d] = node;
+                may[d] = defUse.isMayDef(i);
+                definitionVariables[d++] = defUse.def(i);
+                offsets[defUse.def(i) + 1]++;
+            }
+        }
+        for (int v = 0; v < variables; v++)
+            offsets[v + 1] += offsets[v];
+        int[] next = Arrays.copyOf(offsets, variables);
+        int[] byVariable = new int[count];
+        for (d = 0; d < count; d++)
+            byVariable[next[definitionVariables[d]]++] = d;
+
+        for (d = 0; d < count; d++) {
+            int node = definitionNodes[d];
+            int variable = definitionVariables[d];
+            gen(node, d);
+            if (may[d])
+                continue;
+            for (int i = offsets[variable]; i < offsets[variable + 1]; i++)
+                kill(node, byVariable[i]);
+        }
+        solve();
+    }
+
+    private static int count(FlowGraph graph, int method, DefUse defUse) {
+        int end = graph.getMethodEnd(method);
+        return defUse.defEnd(end - 1) - defUse.defStart(graph.getMethodStart(method));
+    }
+
+    public DefUse getDefUse() {
+        return defUse;
+    }
+
+    public int getDefinitionCount() {
+        return bits();
+    }
+
+    public int getDefinitionNode(int definition) {
+        return definitionNodes[definition];
+    }
+
+    public int getDefinitionVariable(int definition) {
+        return definitionVariables[definition];
+    }
+
+    // does the definition reach the point right before the node
+    public boolean reaches(int definition, int node) {
+        return in(node, definition);
+    }
+}
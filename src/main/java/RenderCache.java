@@ -0,0 +1,109 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Rendered images on disk, named by the SHA-256 of what went into the render: the DOT text of the method
+// (labels, shapes, edges and styles, ids counted from 0 by MethodGraphs) and the image height.
+// An unchanged method is copied out of the cache instead of going through graphviz again.
+// The cache is kept under a size limit by dropping the least recently used images;
+// the order survives between runs through the modification time, which every hit updates.
+public class RenderCache {
+
+    private static final String SUFFIX = ".png";
+
+    private final File dir;
+    private final long maxBytes;
+    // key -> size in bytes, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    public RenderCache(File dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir.toPath());
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                String name = file.getName();
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+                bytes += file.length();
+            }
+        }
+        evict();
+    }
+
+    public static String key(String dot, int height) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(dot.getBytes(StandardCharsets.UTF_8));
+            digest.update(("\n" + height).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // copies the cached image to file, false when there is none
+    public synchronized boolean get(String key, File file) {
+        if (entries.get(key) == null)
+            return false;
+        File cached = file(key);
+        try {
+            Files.copy(cached.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            cached.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            // gone or unreadable, render it again
+            remove(key);
+            return false;
+        }
+    }
+
+    public synchronized void put(String key, File file) throws IOException {
+        File cached = file(key);
+        Files.copy(file.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Long old = entries.put(key, cached.length());
+        if (old != null)
+            bytes -= old;
+        bytes += cached.length();
+        evict();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private File file(String key) {
+        return new File(dir, key + SUFFIX);
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null)
+            bytes -= size;
+        file(key).delete();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            bytes -= entry.getValue();
+            file(entry.getKey()).delete();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+import java.io.File;
+import java.io.IOException;
+
+// Something that turns DOT text into a PNG. An engine renders one graph at a time,
+// RenderPool hands engines to its workers and takes them back.
+public interface RenderEngine {
+
+    // height of the image in pixels, the width follows from the layout
+    void render(String dot, int height, File file) throws IOException;
+
+    // stops a render running in another thread, that render then fails with an IOException.
+    // An engine that was cancelled is not used again.
+    void cancel();
+
+    void close();
+}
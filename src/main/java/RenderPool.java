@@ -0,0 +1,214 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// A fixed set of rendering engines that are started once and then used for every graph of the run.
+// Workers borrow an engine for one render and give it back; an engine whose render failed,
+// timed out or was cancelled is closed and replaced by a new one.
+// The timeout counts from the moment a render gets its engine, not from submit(), so a long queue
+// doesn't make graphs time out.
+public class RenderPool implements Closeable {
+
+    private static RenderPool defaultPool;
+
+    // stands in the queue for an engine that couldn't be replaced, the next render that takes it
+    // starts one, so the pool never loses a slot and take() never waits for an engine that won't come
+    private static final RenderEngine MISSING = new RenderEngine() {
+        @Override
+        public void render(String dot, int height, File file) throws IOException {
+            throw new IOException("no engine");
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Supplier<RenderEngine> factory;
+    private final BlockingQueue<RenderEngine> engines;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService watchdog;
+    private final long timeoutMillis;
+
+    public RenderPool(int size, Supplier<RenderEngine> factory, long timeoutMillis) {
+        if (size < 1)
+            throw new IllegalArgumentException("size must be positive: " + size);
+        this.factory = factory;
+        this.timeoutMillis = timeoutMillis;
+        engines = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++)
+            engines.add(factory.get());
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(size, task -> daemon(task, "render-" + count.incrementAndGet()));
+        watchdog = Executors.newSingleThreadScheduledExecutor(task -> daemon(task, "render-watchdog"));
+    }
+
+    // dot processes when graphviz is installed, otherwise graphviz-java, which renders one graph at a time anyway
+    public static synchronized RenderPool getDefault() {
+        if (defaultPool == null) {
+            if (DotProcessEngine.isAvailable("dot")) {
+                defaultPool = new RenderPool(Runtime.getRuntime().availableProcessors(), () -> {
+                    try {
+                        return new DotProcessEngine();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("can't start dot", e);
+                    }
+                }, 60_000);
+            } else {
+                defaultPool = new RenderPool(1, GraphvizJavaEngine::new, 60_000);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(defaultPool::close));
+        }
+        return defaultPool;
+    }
+
+    // cancel(true) on the returned future stops the render in its engine
+    public Future<File> submit(String dot, int height, File file) {
+        Render render = new Render(dot, height, file);
+        RenderFuture future = new RenderFuture(render);
+        render.future = future;
+        workers.execute(future);
+        return future;
+    }
+
+    public File render(String dot, int height, File file) throws IOException, InterruptedException {
+        try {
+            return submit(dot, height, file).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        watchdog.shutdownNow();
+        RenderEngine engine;
+        while ((engine = engines.poll()) != null)
+            engine.close();
+    }
+
+    private void giveBack(RenderEngine engine, boolean failed) {
+        if (failed) {
+            engine.close();
+            try {
+                engine = factory.get();
+            } catch (RuntimeException e) {
+                engine = MISSING;
+            }
+        }
+        engines.add(engine);
+    }
+
+    // an engine from the queue, started here if the last one couldn't be replaced
+    private RenderEngine borrow() throws IOException, InterruptedException {
+        RenderEngine engine = engines.take();
+        if (engine != MISSING)
+            return engine;
+        try {
+            return factory.get();
+        } catch (RuntimeException e) {
+            engines.add(MISSING);
+            throw new IOException("can't start a render engine", e);
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private class Render implements Callable<File> {
+        private final String dot;
+        private final int height;
+        private final File file;
+        private RenderFuture future;
+        private volatile RenderEngine engine;
+        private volatile boolean timedOut = false;
+        private volatile boolean cancelled = false;
+
+        Render(String dot, int height, File file) {
+            this.dot = dot;
+            this.height = height;
+            this.file = file;
+        }
+
+        @Override
+        public File call() throws IOException, InterruptedException {
+            RenderEngine borrowed = borrow();
+            engine = borrowed;
+            // the caller gets the timeout right away, even if the engine takes a while to stop
+            ScheduledFuture<?> timer = timeoutMillis > 0 ? watchdog.schedule(() -> {
+                timedOut = true;
+                future.fail(timeout());
+                borrowed.cancel();
+            }, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+            boolean failed = true;
+            try {
+                borrowed.render(dot, height, file);
+                failed = false;
+                return file;
+            } catch (IOException e) {
+                throw timedOut ? timeout() : e;
+            } finally {
+                engine = null;
+                // a watchdog that already fired or a cancel() that saw the engine has cancelled it
+                if (cancelled || timer != null && !timer.cancel(false))
+                    failed = true;
+                giveBack(borrowed, failed);
+            }
+        }
+
+        private IOException timeout() {
+            return new IOException("render of " + file + " timed out after " + timeoutMillis + " ms");
+        }
+
+        void cancel() {
+            cancelled = true;
+            RenderEngine current = engine;
+            if (current != null)
+                current.cancel();
+        }
+    }
+
+    private static class RenderFuture extends FutureTask<File> {
+        private final Render render;
+
+        RenderFuture(Render render) {
+            super(render);
+            this.render = render;
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning)
+                render.cancel();
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// Renders every method to its own PNG, <dir>/<index>_<name>.png, on the engines of a RenderPool.
+// The image grows with the number of nodes of the method instead of using one fixed width for everything,
+// so a small method stays small and one big method doesn't hold up the others.
+// With a RenderCache, methods that were rendered before are copied from it and never reach the pool.
+public class SchemeRenderer {
+
+    // pixels per node and the bounds the height is kept in
+    private static final int NODE_HEIGHT = 60;
+    private static final int MIN_HEIGHT = 200;
+    private static final int MAX_HEIGHT = 8000;
+
+    private final RenderPool pool;
+    private RenderCache cache;
+
+    public SchemeRenderer() {
+        this(RenderPool.getDefault());
+    }
+
+    public SchemeRenderer(RenderPool pool) {
+        this.pool = pool;
+    }
+
+    public void setCache(RenderCache cache) {
+        this.cache = cache;
+    }
+
+    static int height(int nodes) {
+        return Math.max(MIN_HEIGHT, Math.min(MAX_HEIGHT, nodes * NODE_HEIGHT));
+    }
+
+    static File file(File dir, MethodGraphs.Method method) {
+        String name = method.getName().replaceAll("[^A-Za-z0-9_$]", "_");
+        return new File(dir, method.getIndex() + "_" + name + ".png");
+    }
+
+    // returns the files written, failed methods are reported and left out
+    public List<File> render(List<MethodGraphs.Method> methods, File dir) {
+        List<File> files = new ArrayList<>();
+        if (methods.isEmpty())
+            return files;
+        dir.mkdirs();
+        // a null future is a cache hit
+        List<Future<File>> futures = new ArrayList<>();
+        String[] keys = new String[methods.size()];
+        for (int i = 0; i < methods.size(); i++) {
+            MethodGraphs.Method method = methods.get(i);
+            int height = height(method.getNodeCount());
+            File file = file(dir, method);
+            if (cache != null) {
+                keys[i] = RenderCache.key(method.getDot(), height);
+                if (cache.get(keys[i], file)) {
+                    futures.add(null);
+                    continue;
+                }
+            }
+            futures.add(pool.submit(method.getDot(), height, file));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i) == null) {
+                    files.add(file(dir, methods.get(i)));
+                    continue;
+                }
+                try {
+                    File file = futures.get(i).get();
+                    if (cache != null)
+                        cache.put(keys[i], file);
+                    files.add(file);
+                } catch (ExecutionException e) {
+                    System.err.println("rendering " + methods.get(i).getLabel() + " failed: " + e.getCause());
+                } catch (IOException e) {
+                    System.err.println("caching " + methods.get(i).getLabel() + " failed: " + e);
+                    files.add(file(dir, methods.get(i)));
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<File> future : futures) {
+                if (future != null)
+                    future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+        return files;
+    }
+}
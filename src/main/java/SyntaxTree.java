@@ -0,0 +1,184 @@
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import parsers.Java8Parser;
+
+import java.util.Arrays;
+
+// Compact copy of a parse tree with the same shape CFG used to build from objects:
+// chains of rules with a single child are collapsed into their topmost rule.
+// Nodes are ints, their data lives in parallel arrays:
+// kind is the Java8Parser.RULE_* index of a rule node or -2 - token type for a token node (EOF is -1),
+// token and stop are the indexes in the token stream of the first and last token the node covers.
+public class SyntaxTree {
+    public static final int NONE = -1;
+
+    private final TokenStream tokens;
+    private int[] kind;
+    private int[] token;
+    private int[] stop;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] lastChild;
+    private int size = 0;
+
+    public SyntaxTree(ParseTree tree, TokenStream tokens) {
+        this.tokens = tokens;
+        int capacity = Math.max(16, tokens.size() * 2);
+        kind = new int[capacity];
+        token = new int[capacity];
+        stop = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        lastChild = new int[capacity];
+        int root = add(NONE, tree);
+        walk(tree, root);
+        lastChild = null;
+    }
+
+    // same as walking the tree recursively, but with an explicit stack of (tree, parent) pairs
+    // so that deeply nested expressions don't need a deep Java stack
+    private void walk(ParseTree tree, int parent) {
+        ParseTree[] trees = new ParseTree[32];
+        int[] parents = new int[32];
+        int top = 0;
+        trees[top] = tree;
+        parents[top++] = parent;
+        while (top > 0) {
+            ParseTree t = trees[--top];
+            int p = parents[top];
+            trees[top] = null;
+            int count = t.getChildCount();
+            if (top + count > trees.length) {
+                trees = Arrays.copyOf(trees, Math.max(trees.length * 2, top + count));
+                parents = Arrays.copyOf(parents, trees.length);
+            }
+            if (count == 0) {
+                add(p, t);
+            } else if (count == 1) {
+                trees[top] = t.getChild(0);
+                parents[top++] = p;
+            } else {
+                int first = size;
+                for (int i = 0; i < count; i++)
+                    add(p, t.getChild(i));
+                // children are walked first to last, so they go on the stack last to first
+                for (int i = count - 1; i >= 0; i--) {
+                    if (t.getChild(i).getChildCount() > 0) {
+                        trees[top] = t.getChild(i);
+                        parents[top++] = first + i;
+                    }
+                }
+            }
+        }
+    }
+
+    private int add(int parent, ParseTree tree) {
+        if (size == kind.length)
+            grow();
+        int n = size++;
+        if (tree instanceof TerminalNode) {
+            Token symbol = ((TerminalNode) tree).getSymbol();
+            kind[n] = -2 - symbol.getType();
+            token[n] = symbol.getTokenIndex();
+            stop[n] = token[n];
+        } else {
+            ParserRuleContext ctx = (ParserRuleContext) tree;
+            kind[n] = ctx.getRuleIndex();
+            token[n] = ctx.getStart().getTokenIndex();
+            // an empty rule stops before it starts
+            stop[n] = ctx.getStop() == null ? token[n] - 1 : ctx.getStop().getTokenIndex();
+        }
+        firstChild[n] = NONE;
+        nextSibling[n] = NONE;
+        lastChild[n] = NONE;
+        if (parent != NONE) {
+            if (firstChild[parent] == NONE)
+                firstChild[parent] = n;
+            else
+                nextSibling[lastChild[parent]] = n;
+            lastChild[parent] = n;
+        }
+        return n;
+    }
+
+    private void grow() {
+        int capacity = kind.length * 2;
+        kind = Arrays.copyOf(kind, capacity);
+        token = Arrays.copyOf(token, capacity);
+        stop = Arrays.copyOf(stop, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
+    // rule index, or NONE for token nodes
+    public int ruleIndex(int node) {
+        return kind[node] >= 0 ? kind[node] : NONE;
+    }
+
+    // token type, or NONE for rule nodes, which is also the type of EOF
+    public int tokenType(int node) {
+        return kind[node] < 0 ? -2 - kind[node] : NONE;
+    }
+
+    public boolean isToken(int node) {
+        return kind[node] < 0;
+    }
+
+    public int tokenIndex(int node) {
+        return token[node];
+    }
+
+    public int stopIndex(int node) {
+        return stop[node];
+    }
+
+    public Token token(int node) {
+        return tokens.get(token[node]);
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int n = firstChild[node]; n != NONE; n = nextSibling[n])
+            count++;
+        return count;
+    }
+
+    // rule name as used by Java8.g4, null for token nodes
+    public String ruleName(int node) {
+        return isToken(node) ? null : Java8Parser.ruleNames[kind[node]];
+    }
+
+    // the tokens the node covers, taken straight from the token stream
+    public TokenLabel label(int node) {
+        return new TokenLabel(tokens, token[node], stop[node]);
+    }
+
+    // text of a token node, null for rule nodes
+    public String text(int node) {
+        return isToken(node) ? token(node).getText() : null;
+    }
+}
@@ -0,0 +1,81 @@
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import parsers.Java8Parser;
+
+import java.io.IOException;
+
+// Label of a statement: the text of the tokens start..stop of the stream separated by single spaces,
+// without ';' and hidden tokens. The text is only put together when it is first asked for,
+// appendTo() writes it out without building the String at all.
+public final class TokenLabel implements CharSequence {
+
+    private final TokenStream tokens;
+    private final int start;
+    private final int stop;
+    private String text;
+
+    public TokenLabel(TokenStream tokens, int start, int stop) {
+        this.tokens = tokens;
+        this.start = start;
+        this.stop = stop;
+    }
+
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getStop() {
+        return stop;
+    }
+
+    public void appendTo(Appendable out) throws IOException {
+        if (text != null) {
+            out.append(text);
+            return;
+        }
+        boolean first = true;
+        for (int i = start; i <= stop; i++) {
+            Token token = tokens.get(i);
+            if (token.getChannel() != Token.DEFAULT_CHANNEL || token.getType() == Token.EOF
+                    || token.getType() == Java8Parser.SEMI)
+                continue;
+            if (!first)
+                out.append(' ');
+            out.append(token.getText());
+            first = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            StringBuilder builder = new StringBuilder();
+            try {
+                appendTo(builder);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            text = builder.toString();
+        }
+        return text;
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+}
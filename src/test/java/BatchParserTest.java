@@ -0,0 +1,99 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File sources(int count) throws IOException {
+        File dir = folder.newFolder("src");
+        for (int i = 0; i < count; i++)
+            CFGListenerTest.write(folder, String.format("src/F%02d.java", i),
+                    "class F" + i + " { int f(int a) { if (a > " + i + ") return a; return " + i + "; } }");
+        return dir;
+    }
+
+    @Test
+    public void resultsKeepTheOrderOfTheFiles() throws IOException {
+        File dir = sources(20);
+        StringWriter out = new StringWriter();
+        BatchParser batch = new BatchParser(3);
+        batch.setDotWriter(out);
+        List<BatchParser.Result> results = batch.parse(dir);
+        assertEquals(20, results.size());
+        StringWriter expected = new StringWriter();
+        for (int i = 0; i < 20; i++) {
+            File file = new File(dir, String.format("F%02d.java", i));
+            assertEquals(file, results.get(i).getSource());
+            new Parser(file).writeDot(new DotWriter(expected));
+        }
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    // other files in a directory are left out, a file named on its own is always in the results
+    @Test
+    public void namedFilesAreReported() throws IOException {
+        File dir = sources(1);
+        CFGListenerTest.write(folder, "src/notes.txt", "not java");
+        File notes = CFGListenerTest.write(folder, "Notes.txt", "class Notes { }");
+        File missing = new File(folder.getRoot(), "Missing.java");
+        List<BatchParser.Result> results = new BatchParser(2).parse(dir, notes, missing);
+        assertEquals(3, results.size());
+        assertFalse(results.get(0).isFailed());
+        assertEquals(notes, results.get(1).getSource());
+        assertTrue(results.get(1).getError() instanceof IllegalArgumentException);
+        assertEquals(missing, results.get(2).getSource());
+        assertTrue(results.get(2).getError() instanceof FileNotFoundException);
+        assertTrue(results.get(2).toString().contains("doesn't exist"));
+    }
+
+    // while the first graph is being written no more than two files per thread are parsed
+    @Test
+    public void filesAreParsedAheadOfTheWriterInABoundedWindow() throws IOException {
+        File dir = sources(20);
+        AtomicInteger parsed = new AtomicInteger();
+        IncrementalIndex index = new IncrementalIndex(folder.newFolder("index")) {
+            @Override
+            public void put(File source, String hash, String dot) throws IOException {
+                parsed.incrementAndGet();
+                super.put(source, hash, dot);
+            }
+        };
+        AtomicInteger parsedAtFirstWrite = new AtomicInteger(-1);
+        StringWriter out = new StringWriter();
+        BatchParser batch = new BatchParser(2);
+        batch.setIncremental(index);
+        batch.setDotWriter(new FilterWriter(out) {
+            @Override
+            public void write(String text, int offset, int length) throws IOException {
+                if (parsedAtFirstWrite.get() < 0) {
+                    // time enough for the workers to run ahead as far as they can
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    parsedAtFirstWrite.set(parsed.get());
+                }
+                super.write(text, offset, length);
+            }
+        });
+        assertEquals(20, batch.parse(dir).size());
+        assertTrue(String.valueOf(parsedAtFirstWrite.get()), parsedAtFirstWrite.get() <= 4);
+        assertEquals(20, parsed.get());
+    }
+}
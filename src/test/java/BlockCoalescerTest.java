@@ -0,0 +1,137 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockCoalescerTest {
+
+    private static final String LOOPS = String.join("\n",
+            "class Loops {",
+            "    int f(int[] values, boolean c) {",
+            "        int sum = 0;",
+            "        int max = 0;",
+            "        for (int i = 0; i < values.length; i++) {",
+            "            int v = values[i];",
+            "            sum += v;",
+            "            if (v > max) {",
+            "                max = v;",
+            "                continue;",
+            "            } else {",
+            "                sum--;",
+            "                sum++;",
+            "            }",
+            "            if (c)",
+            "                return -1;",
+            "            sum *= 2;",
+            "        }",
+            "        sum += max;",
+            "        for (int v : values) {",
+            "        }",
+            "        return sum;",
+            "    }",
+            "",
+            "    void g() {",
+            "        int a = 1;",
+            "        a++;",
+            "    }",
+            "}");
+
+    // the block of every statement of the graph with a node per statement is found by following the lines
+    // of the label of the block from its first statement; the edges between blocks have to be the edges
+    // of the coalesced graph, with the same kinds, and nothing else may change
+    private static void check(CFG cfg) {
+        FlowGraph statements = cfg.toFlowGraph(false);
+        FlowGraph blocks = cfg.toFlowGraph(true);
+        assertEquals(statements.getMethodCount(), blocks.getMethodCount());
+        int[] blockOf = new int[statements.getNodeCount()];
+        Arrays.fill(blockOf, -1);
+        int next = 0;
+        for (int b = 0; b < blocks.getNodeCount(); b++) {
+            while (blockOf[next] >= 0)
+                next++;
+            int n = next;
+            assertEquals(statements.getKind(n), blocks.getKind(b));
+            assertEquals(statements.getMethodOf(n), blocks.getMethodOf(b));
+            String[] lines = blocks.getLabel(b).toString().split("\n", -1);
+            if (lines.length > 1)
+                assertEquals(GraphSink.NodeKind.STATEMENT, blocks.getKind(b));
+            for (int line = 0; line < lines.length; line++) {
+                if (line > 0) {
+                    // one edge on to the next statement, which only this one leads into
+                    assertEquals(1, statements.successorEnd(n) - statements.successorStart(n));
+                    assertEquals(GraphSink.EdgeKind.NORMAL, statements.successorKind(statements.successorStart(n)));
+                    n = statements.successor(statements.successorStart(n));
+                    assertEquals(1, statements.predecessorEnd(n) - statements.predecessorStart(n));
+                    assertEquals(GraphSink.NodeKind.STATEMENT, statements.getKind(n));
+                }
+                assertEquals(statements.getLabel(n).toString(), lines[line]);
+                assertEquals(-1, blockOf[n]);
+                blockOf[n] = b;
+            }
+        }
+        for (int n = 0; n < statements.getNodeCount(); n++)
+            assertTrue("statement " + n + " is in no block", blockOf[n] >= 0);
+
+        List<String> expected = new ArrayList<>();
+        for (int n = 0; n < statements.getNodeCount(); n++) {
+            for (int i = statements.successorStart(n); i < statements.successorEnd(n); i++) {
+                int to = statements.successor(i);
+                if (blockOf[to] != blockOf[n] || statements.predecessorEnd(to) - statements.predecessorStart(to) != 1
+                        || to < n)
+                    expected.add(blockOf[n] + " -> " + blockOf[to] + " " + statements.successorKind(i));
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (int b = 0; b < blocks.getNodeCount(); b++) {
+            for (int i = blocks.successorStart(b); i < blocks.successorEnd(b); i++)
+                actual.add(b + " -> " + blocks.successor(i) + " " + blocks.successorKind(i));
+        }
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+
+        for (GraphSink.NodeKind kind : GraphSink.NodeKind.values()) {
+            if (kind != GraphSink.NodeKind.STATEMENT)
+                assertEquals(kind.toString(), count(statements, kind), count(blocks, kind));
+        }
+    }
+
+    private static int count(FlowGraph graph, GraphSink.NodeKind kind) {
+        int count = 0;
+        for (int n = 0; n < graph.getNodeCount(); n++) {
+            if (graph.getKind(n) == kind)
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void loops() {
+        CFG cfg = Sources.cfg(LOOPS);
+        check(cfg);
+        FlowGraph blocks = cfg.toFlowGraph(true);
+        assertTrue(blocks.getNodeCount() < cfg.toFlowGraph(false).getNodeCount());
+        // a method that is one block
+        int g = blocks.getMethodCount() - 1;
+        assertEquals(2, blocks.getMethodEnd(g) - blocks.getMethodStart(g));
+        assertEquals("int a = 1\na ++", blocks.getLabel(blocks.getMethodStart(g) + 1).toString());
+    }
+
+    @Test
+    public void nestedTypes() {
+        check(Sources.cfg(CFGListenerTest.NESTED));
+    }
+
+    // the ids go on from one method to the next, as FlowGraphSink wants them
+    @Test
+    public void idsOfAllMethods() {
+        FlowGraph blocks = Sources.cfg(LOOPS).toFlowGraph(true);
+        assertEquals(2, blocks.getMethodCount());
+        assertEquals(blocks.getMethodEnd(0), blocks.getMethodStart(1));
+    }
+}
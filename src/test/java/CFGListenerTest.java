@@ -0,0 +1,261 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// CFG.handle(), CFGListener on the tree and CFGListener without a tree have to draw the same graph
+public class CFGListenerTest {
+
+    // nested, local, anonymous and enum constant classes, interfaces, break and continue, nested blocks
+    static final String NESTED = String.join("\n",
+            "import java.util.Comparator;",
+            "",
+            "public class Nested {",
+            "    private final Runnable field = new Runnable() {",
+            "        public void run() {",
+            "            int a = 0;",
+            "            if (a > 0)",
+            "                a++;",
+            "        }",
+            "    };",
+            "    private final Runnable lambda = () -> {",
+            "        class InLambda {",
+            "            void g() {",
+            "                int b = 1;",
+            "            }",
+            "        }",
+            "    };",
+            "",
+            "    static {",
+            "        new Object() {",
+            "            int h() {",
+            "                return 1;",
+            "            }",
+            "        };",
+            "    }",
+            "",
+            "    public Nested() {",
+            "        this(1);",
+            "    }",
+            "",
+            "    public Nested(int x) throws IllegalArgumentException {",
+            "        super();",
+            "        int y = x;",
+            "    }",
+            "",
+            "    int loops(int[] values) {",
+            "        int sum = 0;",
+            "",
+            "        for (int i = 0; i < values.length; i++) {",
+            "            if (values[i] < 0)",
+            "                continue;",
+            "            if (values[i] > 100)",
+            "                break;",
+            "            for (int v : values) {",
+            "                if (v == i) {",
+            "                    break;",
+            "                } else {",
+            "                    continue;",
+            "                }",
+            "            }",
+            "            sum += values[i];",
+            "        }",
+            "        while (sum > 10) {",
+            "            sum--;",
+            "            break;",
+            "        }",
+            "        Comparator<Integer> c = new Comparator<Integer>() {",
+            "            public int compare(Integer p, Integer q) {",
+            "                return p - q;",
+            "            }",
+            "        };",
+            "        Runnable r = () -> { int z = 1; z++; };",
+            "        class Local {",
+            "            void k() {",
+            "            }",
+            "        }",
+            "        return sum;",
+            "    }",
+            "",
+            "    abstract static class Shape {",
+            "        abstract double area();",
+            "",
+            "        native void peek();",
+            "",
+            "        double twice() {",
+            "            return 2 * area();",
+            "        }",
+            "    }",
+            "",
+            "    static class Inner {",
+            "        void m() {",
+            "            for (;;) {",
+            "                break;",
+            "            }",
+            "        }",
+            "",
+            "        class Deeper {",
+            "            int n(int k) {",
+            "                if (k > 0)",
+            "                    return k;",
+            "                return -k;",
+            "            }",
+            "        }",
+            "    }",
+            "",
+            "    interface Visitor<T> {",
+            "        T visit(Object o);",
+            "",
+            "        default T twice(Object o) {",
+            "            visit(o);",
+            "            return visit(o);",
+            "        }",
+            "",
+            "        static int zero() {",
+            "            return 0;",
+            "        }",
+            "    }",
+            "",
+            "    enum Op {",
+            "        PLUS {",
+            "            int apply(int a, int b) {",
+            "                return a + b;",
+            "            }",
+            "        },",
+            "        MINUS;",
+            "",
+            "        int apply(int a, int b) {",
+            "            if (a > b)",
+            "                return a - b;",
+            "            return b - a;",
+            "        }",
+            "    }",
+            "",
+            "    @interface Marker {",
+            "        int value() default 0;",
+            "    }",
+            "}");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static File write(TemporaryFolder folder, String name, String source) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String tree(File file) throws IOException {
+        StringWriter out = new StringWriter();
+        DotWriter dot = new DotWriter(out);
+        dot.beginGraph("g");
+        new Parser(file).buildCFG().handle(new FlowGraphBuilder(dot));
+        dot.endGraph();
+        dot.flush();
+        return out.toString();
+    }
+
+    private static String listener(File file, boolean buildTree) throws IOException {
+        StringWriter out = new StringWriter();
+        DotWriter dot = new DotWriter(out);
+        dot.beginGraph("g");
+        Parser parser = new Parser(file);
+        parser.setBuildTree(buildTree);
+        parser.buildFlowGraph(dot);
+        dot.endGraph();
+        dot.flush();
+        return out.toString();
+    }
+
+    @Test
+    public void sameGraphOnEveryPath() throws IOException {
+        File file = write(folder, "Nested.java", NESTED);
+        String tree = tree(file);
+        assertEquals(tree, listener(file, true));
+        assertEquals(tree, listener(file, false));
+    }
+
+    @Test
+    public void nestedTypesAreVisited() throws IOException {
+        String dot = tree(write(folder, "Nested.java", NESTED));
+        for (String method : new String[]{"public void run ( )", "void g ( )", "int h ( )", "void m ( )",
+                "int n ( int k )", "default T twice ( Object o )", "static int zero ( )", "abstract double area ( )",
+                "public Nested ( int x ) throws IllegalArgumentException"})
+            assertTrue(method, dot.contains("[label=\"" + method + "\",shape=ellipse]"));
+        // the methods of classes inside a method body are part of a statement
+        assertTrue(dot.contains("class Local { void k ( ) { } }"));
+        assertFalse(dot.contains("[label=\"public int compare ( Integer p , Integer q )\""));
+    }
+
+    @Test
+    public void breakAndContinueAreNodes() throws IOException {
+        String dot = tree(write(folder, "Nested.java", NESTED));
+        assertEquals(3, count(dot, "[label=\"break\",shape=rectangle]"));
+        assertEquals(2, count(dot, "[label=\"continue\",shape=rectangle]"));
+    }
+
+    // kind, label and edge kind of every successor of the node
+    private static String successors(FlowGraph graph, int node) {
+        StringBuilder text = new StringBuilder();
+        for (int e = graph.successorStart(node); e < graph.successorEnd(node); e++)
+            text.append(graph.getKind(graph.successor(e))).append(' ').append(graph.getLabel(graph.successor(e)))
+                    .append(' ').append(graph.successorKind(e)).append(';');
+        return text.toString();
+    }
+
+    // a break goes to the end of the innermost loop and a continue back to its head, not on to the next statement
+    @Test
+    public void breakAndContinueLeaveTheIteration() {
+        FlowGraph graph = Sources.method("int y = 0;", "for (int i = 0; i < p; i++) {", "if (c) break;",
+                "if (y > 1) continue;", "for (int j : new int[p]) { if (c) continue; break; }", "y = 1;", "}",
+                "y = 2;");
+        int[] breaks = new int[2];
+        int[] continues = new int[2];
+        int b = 0;
+        int c = 0;
+        for (int n = graph.getMethodStart(0); n < graph.getMethodEnd(0); n++) {
+            if (graph.getLabel(n).toString().equals("break"))
+                breaks[b++] = n;
+            if (graph.getLabel(n).toString().equals("continue"))
+                continues[c++] = n;
+        }
+        int outerEnd = graph.successor(graph.successorStart(breaks[0]));
+        int innerEnd = graph.successor(graph.successorStart(breaks[1]));
+        assertEquals("JOIN  NORMAL;", successors(graph, breaks[0]));
+        assertEquals("STATEMENT y = 2 NORMAL;", successors(graph, outerEnd));
+        assertEquals("JOIN  NORMAL;", successors(graph, breaks[1]));
+        assertEquals("STATEMENT y = 1 NORMAL;", successors(graph, innerEnd));
+        // the ends the loop heads leave to when they are done
+        int outer = Sources.node(graph, 0, "i < p");
+        int inner = Sources.node(graph, 0, "int j : new int [ p ]");
+        assertEquals(outerEnd, graph.successor(graph.successorStart(outer) + 1));
+        assertEquals(innerEnd, graph.successor(graph.successorStart(inner) + 1));
+        assertEquals("BRANCH i < p BACK;", successors(graph, continues[0]));
+        assertEquals("BRANCH int j : new int [ p ] BACK;", successors(graph, continues[1]));
+    }
+
+    @Test
+    public void blocksAreFlattened() throws IOException {
+        File file = write(folder, "Block.java", "class Block { void f() { int a = 0; { a = 7; a = 8; } { } } }");
+        String tree = tree(file);
+        assertEquals(tree, listener(file, true));
+        assertTrue(tree.contains("[label=\"a = 7\",shape=rectangle]"));
+        assertTrue(tree.contains("[label=\"a = 8\",shape=rectangle]"));
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+            count++;
+        return count;
+    }
+}
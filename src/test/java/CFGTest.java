@@ -0,0 +1,26 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CFGTest {
+
+    // every child wrapper is made once, the public view and the syntax tree agree on the children
+    @Test
+    public void childrenAreMadeOnce() {
+        CFG root = Sources.cfg(CFGListenerTest.NESTED);
+        SyntaxTree tree = root.getTree();
+        int count = 0;
+        for (int n = tree.firstChild(root.getNode()); n != SyntaxTree.NONE; n = tree.nextSibling(n)) {
+            CFG child = root.getChild(count);
+            assertEquals(n, child.getNode());
+            assertSame(child, root.getChild(count));
+            assertSame(child, root.getChildren().get(count));
+            count++;
+        }
+        assertEquals(count, root.getChildCount());
+        assertEquals(count, root.getChildren().size());
+        CFG grandchild = root.getChild(0).getChild(0);
+        assertSame(grandchild, root.getChildren().get(0).getChildren().get(0));
+    }
+}
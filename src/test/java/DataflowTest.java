@@ -0,0 +1,187 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataflowTest {
+
+    // gen and kill drawn at random, the same for a seed
+    private static class RandomProblem extends GenKillDataflow {
+
+        final BitSet[] gen;
+        final BitSet[] kill;
+
+        RandomProblem(FlowGraph graph, int bits, Direction direction, boolean union, long seed) {
+            super(graph, 0, bits, direction, union);
+            Random random = new Random(seed);
+            gen = new BitSet[size];
+            kill = new BitSet[size];
+            for (int n = 0; n < size; n++) {
+                gen[n] = new BitSet();
+                kill[n] = new BitSet();
+                for (int b = 0; b < bits; b++) {
+                    int draw = random.nextInt(6);
+                    if (draw == 0) {
+                        gen(n, b);
+                        gen[n].set(b);
+                    } else if (draw == 1) {
+                        kill(n, b);
+                        kill[n].set(b);
+                    }
+                }
+            }
+        }
+    }
+
+    // round robin over the nodes until nothing changes, from the top of the lattice for must problems
+    private static BitSet[][] naive(FlowGraph graph, RandomProblem problem, boolean forward, boolean union) {
+        int size = graph.getNodeCount();
+        int bits = problem.bits();
+        BitSet[] before = new BitSet[size];
+        BitSet[] after = new BitSet[size];
+        for (int n = 0; n < size; n++) {
+            before[n] = new BitSet();
+            after[n] = new BitSet();
+            if (!union)
+                after[n].set(0, bits);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int n = 0; n < size; n++) {
+                int first = forward ? graph.predecessorStart(n) : graph.successorStart(n);
+                int last = forward ? graph.predecessorEnd(n) : graph.successorEnd(n);
+                BitSet value = new BitSet();
+                for (int i = first; i < last; i++) {
+                    BitSet from = after[forward ? graph.predecessor(i) : graph.successor(i)];
+                    if (i == first)
+                        value.or(from);
+                    else if (union)
+                        value.or(from);
+                    else
+                        value.and(from);
+                }
+                before[n] = value;
+                BitSet out = (BitSet) value.clone();
+                out.andNot(problem.kill[n]);
+                out.or(problem.gen[n]);
+                if (!out.equals(after[n])) {
+                    after[n] = out;
+                    changed = true;
+                }
+            }
+        }
+        return new BitSet[][]{before, after};
+    }
+
+    @Test
+    public void solverMatchesRoundRobin() {
+        Random random = new Random(3);
+        for (int round = 0; round < 1000; round++) {
+            int size = 1 + random.nextInt(15);
+            int edges = random.nextInt(size * 3);
+            int[] sources = new int[edges];
+            int[] targets = new int[edges];
+            for (int e = 0; e < edges; e++) {
+                sources[e] = random.nextInt(size);
+                targets[e] = random.nextInt(size);
+            }
+            FlowGraph graph = Sources.graph(size, sources, targets);
+            boolean forward = random.nextBoolean();
+            boolean union = random.nextBoolean();
+            RandomProblem problem = new RandomProblem(graph, random.nextInt(140),
+                    forward ? Dataflow.Direction.FORWARD : Dataflow.Direction.BACKWARD, union, random.nextLong());
+            problem.solve();
+            BitSet[][] expected = naive(graph, problem, forward, union);
+            for (int n = 0; n < size; n++) {
+                String where = "round " + round + " node " + n;
+                assertEquals(where, expected[0][n], forward ? problem.getIn(n) : problem.getOut(n));
+                assertEquals(where, expected[1][n], forward ? problem.getOut(n) : problem.getIn(n));
+            }
+        }
+    }
+
+    // definitions reaching the node as variable@label
+    private static List<String> reaching(FlowGraph graph, String label) {
+        ReachingDefinitions reaching = new ReachingDefinitions(graph, 0);
+        DefUse defUse = reaching.getDefUse();
+        int node = Sources.node(graph, 0, label);
+        List<String> definitions = new ArrayList<>();
+        for (int d = 0; d < reaching.getDefinitionCount(); d++) {
+            if (reaching.reaches(d, node))
+                definitions.add(defUse.getVariable(reaching.getDefinitionVariable(d)) + "@"
+                        + graph.getLabel(reaching.getDefinitionNode(d)));
+        }
+        return definitions;
+    }
+
+    @Test
+    public void definitionsAreKilled() {
+        FlowGraph graph = Sources.method("int a = 0;", "a = p;", "return a;");
+        assertEquals(Arrays.asList("c@int f ( boolean c , int p )", "p@int f ( boolean c , int p )", "a@a = p"),
+                reaching(graph, "return a"));
+    }
+
+    @Test
+    public void definitionInsideLoopStatementKillsNothing() {
+        FlowGraph graph = Sources.method("int a = 0;", "while (c) { a = 1; }", "return a;");
+        List<String> definitions = reaching(graph, "return a");
+        assertTrue(definitions.contains("a@int a = 0"));
+        assertTrue(definitions.contains("a@while ( c ) { a = 1 }"));
+    }
+
+    @Test
+    public void definitionInsideLambdaKillsNothing() {
+        FlowGraph graph = Sources.method("int a = 0;", "Runnable q = () -> { a = 1; };", "return a;");
+        List<String> definitions = reaching(graph, "return a");
+        assertTrue(definitions.contains("a@int a = 0"));
+        assertTrue(definitions.contains("a@Runnable q = ( ) -> { a = 1 }"));
+    }
+
+    @Test
+    public void branchesJoin() {
+        FlowGraph graph = Sources.method("int a = 0;", "if (c) a = 1; else a = 2;", "return a;");
+        assertEquals(Arrays.asList("c@int f ( boolean c , int p )", "p@int f ( boolean c , int p )", "a@a = 1",
+                "a@a = 2"), reaching(graph, "return a"));
+    }
+
+    @Test
+    public void liveVariables() {
+        FlowGraph graph = Sources.method("int a = p;", "int b = 0;", "for (int i = 0; i < a; i++) {", "b += i;", "}",
+                "return b;");
+        LiveVariables live = new LiveVariables(graph, 0);
+        DefUse defUse = live.getDefUse();
+        int entry = graph.getMethodStart(0);
+        int head = Sources.node(graph, 0, "i < a");
+        assertTrue(live.isLiveOut(entry, defUse.indexOf("p")));
+        assertFalse(live.isLiveOut(entry, defUse.indexOf("c")));
+        assertTrue(live.isLiveIn(head, defUse.indexOf("a")));
+        assertTrue(live.isLiveIn(head, defUse.indexOf("b")));
+        assertTrue(live.isLiveIn(head, defUse.indexOf("i")));
+        assertFalse(live.isLiveIn(Sources.node(graph, 0, "int b = 0"), defUse.indexOf("b")));
+    }
+
+    @Test
+    public void liveThroughLoopStatement() {
+        FlowGraph graph = Sources.method("int a = p;", "while (c) { a = 1; }", "return a;");
+        LiveVariables live = new LiveVariables(graph, 0);
+        // the loop may not run, a from before it is still wanted
+        assertTrue(live.isLiveIn(Sources.node(graph, 0, "while ( c ) { a = 1 }"), live.getDefUse().indexOf("a")));
+    }
+
+    @Test
+    public void lambdaLocalsAreNotLive() {
+        FlowGraph graph = Sources.method("Runnable q = () -> { int z = 1; z++; };", "q.run();");
+        LiveVariables live = new LiveVariables(graph, 0);
+        int z = live.getDefUse().indexOf("z");
+        for (int n = graph.getMethodStart(0); n < graph.getMethodEnd(0); n++)
+            assertFalse(graph.getLabel(n).toString(), live.isLiveIn(n, z));
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefUseTest {
+
+    private static List<String> defs(DefUse defUse, int node) {
+        List<String> names = new ArrayList<>();
+        for (int i = defUse.defStart(node); i < defUse.defEnd(node); i++)
+            names.add(defUse.getVariable(defUse.def(i)));
+        return names;
+    }
+
+    private static List<String> uses(DefUse defUse, int node) {
+        List<String> names = new ArrayList<>();
+        for (int i = defUse.useStart(node); i < defUse.useEnd(node); i++)
+            names.add(defUse.getVariable(defUse.use(i)));
+        return names;
+    }
+
+    private static boolean isMayDef(DefUse defUse, int node, String name) {
+        for (int i = defUse.defStart(node); i < defUse.defEnd(node); i++) {
+            if (defUse.getVariable(defUse.def(i)).equals(name))
+                return defUse.isMayDef(i);
+        }
+        throw new IllegalArgumentException(name + " is not defined");
+    }
+
+    @Test
+    public void assignmentsAndIncrements() {
+        FlowGraph graph = Sources.method("int a = p;", "a = a + 1;", "a++;", "int b;", "b += a;", "o.x = b;");
+        DefUse defUse = new DefUse(graph, 0);
+        assertEquals(Arrays.asList("a"), defs(defUse, Sources.node(graph, 0, "int a = p")));
+        assertEquals(Arrays.asList("p"), uses(defUse, Sources.node(graph, 0, "int a = p")));
+        // the value assigned is worked out before the assignment
+        assertEquals(Arrays.asList("a"), uses(defUse, Sources.node(graph, 0, "a = a + 1")));
+        assertEquals(Arrays.asList("a"), defs(defUse, Sources.node(graph, 0, "a ++")));
+        assertEquals(Arrays.asList("a"), uses(defUse, Sources.node(graph, 0, "a ++")));
+        assertEquals(Arrays.asList(), defs(defUse, Sources.node(graph, 0, "int b")));
+        assertEquals(Arrays.asList("b", "a"), uses(defUse, Sources.node(graph, 0, "b += a")));
+        // a field reached through '.' is no variable
+        assertEquals(Arrays.asList(), defs(defUse, Sources.node(graph, 0, "o . x = b")));
+        assertEquals(-1, defUse.indexOf("x"));
+    }
+
+    @Test
+    public void parameters() {
+        FlowGraph graph = Sources.flowGraph("import java.util.*;\nclass T {\n"
+                + "    <K extends Comparable<K>> void f(@Deprecated final Map<String, List<Integer>> m, int old[][],"
+                + " Map.Entry<K, ? super Integer> e, String... rest) {\n"
+                + "    }\n"
+                + "}");
+        DefUse defUse = new DefUse(graph, 0);
+        assertEquals(Arrays.asList("m", "old", "e", "rest"), defs(defUse, graph.getMethodStart(0)));
+        assertEquals(-1, defUse.indexOf("String"));
+        assertEquals(-1, defUse.indexOf("Integer"));
+        assertEquals(-1, defUse.indexOf("K"));
+    }
+
+    @Test
+    public void laterDeclaratorsSeeEarlierOnes() {
+        FlowGraph graph = Sources.method("int a = p, b = a;");
+        DefUse defUse = new DefUse(graph, 0);
+        int node = Sources.node(graph, 0, "int a = p , b = a");
+        assertEquals(Arrays.asList("a", "b"), defs(defUse, node));
+        assertEquals(Arrays.asList("p"), uses(defUse, node));
+    }
+
+    @Test
+    public void compoundStatementsMayDefine() {
+        FlowGraph graph = Sources.method("int a = 0;", "while (c) { a = 1; }", "try { a = 2; } finally { }",
+                "do a = 3; while (c);", "a = 4;");
+        DefUse defUse = new DefUse(graph, 0);
+        assertTrue(isMayDef(defUse, Sources.node(graph, 0, "while ( c ) { a = 1 }"), "a"));
+        assertTrue(isMayDef(defUse, Sources.node(graph, 0, "try { a = 2 } finally { }"), "a"));
+        assertTrue(isMayDef(defUse, Sources.node(graph, 0, "do a = 3 while ( c )"), "a"));
+        assertFalse(isMayDef(defUse, Sources.node(graph, 0, "int a = 0"), "a"));
+        assertFalse(isMayDef(defUse, Sources.node(graph, 0, "a = 4"), "a"));
+    }
+
+    @Test
+    public void lambdaBodiesMayDefine() {
+        FlowGraph graph = Sources.method("int a = 0;", "Runnable q = () -> { int z = 1; z++; a = z; };",
+                "java.util.function.IntUnaryOperator u = x -> a = x;");
+        DefUse defUse = new DefUse(graph, 0);
+        int block = Sources.node(graph, 0, "Runnable q = ( ) -> { int z = 1 z ++ a = z }");
+        assertFalse(isMayDef(defUse, block, "q"));
+        assertTrue(isMayDef(defUse, block, "z"));
+        assertTrue(isMayDef(defUse, block, "a"));
+        // z is defined in the lambda before it is used there
+        assertEquals(Arrays.asList(), uses(defUse, block));
+        int expression = Sources.node(graph, 0, "java . util . function . IntUnaryOperator u = x -> a = x");
+        assertTrue(isMayDef(defUse, expression, "a"));
+        assertFalse(isMayDef(defUse, expression, "u"));
+    }
+
+    @Test
+    public void usesAfterBranchesAreCounted() {
+        FlowGraph graph = Sources.method("int a = 0, d = 0;",
+                "switch (p) { case 1: a = 1; break; case 2: d = a; }",
+                "Runnable q = () -> { if (c) a = 2; d = a; };",
+                "Runnable r = () -> { a = 3; d = a; };",
+                "Runnable s = () -> { { a = 4; } d = a; };");
+        DefUse defUse = new DefUse(graph, 0);
+        assertEquals(Arrays.asList("p", "a"),
+                uses(defUse, Sources.node(graph, 0, "switch ( p ) { case 1 : a = 1 break case 2 : d = a }")));
+        assertEquals(Arrays.asList("c", "a"),
+                uses(defUse, Sources.node(graph, 0, "Runnable q = ( ) -> { if ( c ) a = 2 d = a }")));
+        assertEquals(Arrays.asList(), uses(defUse, Sources.node(graph, 0, "Runnable r = ( ) -> { a = 3 d = a }")));
+        // the block of the definition is over before the use
+        assertEquals(Arrays.asList("a"),
+                uses(defUse, Sources.node(graph, 0, "Runnable s = ( ) -> { { a = 4 } d = a }")));
+    }
+
+    // a variable the node defines for sure and maybe is defined for sure
+    @Test
+    public void mustAndMayDefinitionInOneNode() {
+        FlowGraph graph = Sources.method("int a = 0;", "a = call(() -> { a = 1; });");
+        DefUse defUse = new DefUse(graph, 0);
+        int node = Sources.node(graph, 0, "a = call ( ( ) -> { a = 1 } )");
+        assertEquals(Arrays.asList("a"), defs(defUse, node));
+        assertFalse(isMayDef(defUse, node, "a"));
+    }
+}
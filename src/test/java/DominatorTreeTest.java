@@ -0,0 +1,203 @@
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DominatorTreeTest {
+
+    // dominators of every node by the iterative data flow definition, null for what the root doesn't
+    // reach; index size is the virtual exit of post-dominators
+    private static BitSet[] iterative(FlowGraph graph, boolean post) {
+        int size = graph.getNodeCount();
+        int count = post ? size + 1 : size;
+        int root = post ? size : 0;
+        List<List<Integer>> predecessors = new ArrayList<>();
+        List<List<Integer>> successors = new ArrayList<>();
+        for (int v = 0; v < count; v++) {
+            predecessors.add(new ArrayList<>());
+            successors.add(new ArrayList<>());
+        }
+        for (int v = 0; v < size; v++) {
+            if (post && graph.successorStart(v) == graph.successorEnd(v)) {
+                predecessors.get(v).add(size);
+                successors.get(size).add(v);
+            }
+            for (int i = graph.successorStart(v); i < graph.successorEnd(v); i++) {
+                int w = graph.successor(i);
+                predecessors.get(post ? v : w).add(post ? w : v);
+                successors.get(post ? w : v).add(post ? v : w);
+            }
+        }
+        boolean[] reached = new boolean[count];
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(root);
+        reached[root] = true;
+        while (!queue.isEmpty()) {
+            for (int w : successors.get(queue.poll())) {
+                if (!reached[w]) {
+                    reached[w] = true;
+                    queue.add(w);
+                }
+            }
+        }
+        BitSet[] dominators = new BitSet[count];
+        for (int v = 0; v < count; v++) {
+            dominators[v] = new BitSet();
+            if (v == root) {
+                dominators[v].set(v);
+            } else {
+                for (int u = 0; u < count; u++) {
+                    if (reached[u])
+                        dominators[v].set(u);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int v = 0; v < count; v++) {
+                if (v == root || !reached[v])
+                    continue;
+                BitSet value = null;
+                for (int p : predecessors.get(v)) {
+                    if (!reached[p])
+                        continue;
+                    if (value == null)
+                        value = (BitSet) dominators[p].clone();
+                    else
+                        value.and(dominators[p]);
+                }
+                value.set(v);
+                if (!value.equals(dominators[v])) {
+                    dominators[v] = value;
+                    changed = true;
+                }
+            }
+        }
+        for (int v = 0; v < count; v++) {
+            if (!reached[v])
+                dominators[v] = null;
+        }
+        return dominators;
+    }
+
+    private static void check(FlowGraph graph, boolean post, String where) {
+        DominatorTree tree = post ? DominatorTree.postDominators(graph, 0) : DominatorTree.dominators(graph, 0);
+        BitSet[] expected = iterative(graph, post);
+        int size = graph.getNodeCount();
+        for (int b = 0; b < expected.length; b++) {
+            int nodeB = b == size ? DominatorTree.EXIT : b;
+            assertEquals(where, expected[b] != null, tree.isReachable(nodeB));
+            for (int a = 0; a < expected.length; a++) {
+                int nodeA = a == size ? DominatorTree.EXIT : a;
+                boolean dominates = expected[a] != null && expected[b] != null && expected[b].get(a);
+                assertEquals(where + " " + a + " " + b, dominates, tree.dominates(nodeA, nodeB));
+            }
+            if (expected[b] == null)
+                continue;
+            assertEquals(where, expected[b].cardinality() - 1, tree.getDepth(nodeB));
+            int idom = tree.getImmediateDominator(nodeB);
+            if (expected[b].cardinality() == 1) {
+                assertEquals(where, DominatorTree.NONE, idom);
+            } else {
+                // the strict dominator nearest to the node
+                int i = idom == DominatorTree.EXIT ? size : idom;
+                assertTrue(where, expected[b].get(i));
+                assertEquals(where, expected[b].cardinality() - 1, expected[i].cardinality());
+            }
+        }
+    }
+
+    @Test
+    public void randomGraphs() {
+        Random random = new Random(7);
+        for (int round = 0; round < 1000; round++) {
+            int size = 1 + random.nextInt(12);
+            int edges = random.nextInt(size * 3);
+            int[] sources = new int[edges];
+            int[] targets = new int[edges];
+            for (int e = 0; e < edges; e++) {
+                sources[e] = random.nextInt(size);
+                targets[e] = random.nextInt(size);
+            }
+            FlowGraph graph = Sources.graph(size, sources, targets);
+            check(graph, false, "round " + round);
+            check(graph, true, "round " + round + " post");
+        }
+    }
+
+    @Test
+    public void methods() {
+        FlowGraph graph = Sources.method("int a = p;", "for (int i = 0; i < a; i++) {", "if (c) return i;",
+                "a--;", "}", "if (a > 0) { a = 1; } else { return -1; }", "return a;");
+        check(graph, false, "method");
+        check(graph, true, "method post");
+    }
+
+    // the way out through a break doesn't pass the rest of the loop body
+    @Test
+    public void breakIsPostDominatedByTheLoopEnd() {
+        FlowGraph graph = Sources.method("int y = 0;", "for (int i = 0; i < p; i++) {", "if (c) break;",
+                "if (c) continue;", "y = 1;", "}", "return y;");
+        // made by the builder right after the loop head and update
+        int loopEnd = Sources.node(graph, 0, "i ++") + 1;
+        assertEquals(GraphSink.NodeKind.JOIN, graph.getKind(loopEnd));
+        DominatorTree post = DominatorTree.postDominators(graph, 0);
+        assertEquals(loopEnd, post.getImmediateDominator(Sources.node(graph, 0, "break")));
+        assertEquals(Sources.node(graph, 0, "i < p"), post.getImmediateDominator(Sources.node(graph, 0, "continue")));
+        assertFalse(post.dominates(Sources.node(graph, 0, "y = 1"), Sources.node(graph, 0, "break")));
+        check(graph, false, "break");
+        check(graph, true, "break post");
+    }
+
+    // 0 -> 1 -> 2, 0 -> 3 -> 3 (never ends), 4 unreachable -> 2
+    @Test
+    public void exitsAndUnreachableNodes() {
+        FlowGraph graph = Sources.graph(5, new int[]{0, 1, 0, 3, 4}, new int[]{1, 2, 3, 3, 2});
+        DominatorTree dominators = DominatorTree.dominators(graph, 0);
+        assertEquals(0, dominators.getRoot());
+        assertFalse(dominators.isReachable(4));
+        assertEquals(DominatorTree.NONE, dominators.getImmediateDominator(4));
+        assertEquals(1, dominators.getImmediateDominator(2));
+        assertFalse(dominators.dominates(4, 2));
+
+        DominatorTree post = DominatorTree.postDominators(graph, 0);
+        assertTrue(post.isPostDominators());
+        assertEquals(DominatorTree.EXIT, post.getRoot());
+        // the loop on 3 never gets to the exit
+        assertFalse(post.isReachable(3));
+        assertTrue(post.isReachable(4));
+        assertEquals(2, post.getImmediateDominator(4));
+        assertEquals(DominatorTree.EXIT, post.getImmediateDominator(2));
+        assertEquals(1, post.getImmediateDominator(0));
+        assertTrue(post.dominates(DominatorTree.EXIT, 0));
+        check(graph, false, "exits");
+        check(graph, true, "exits post");
+    }
+
+    // two returns: the exit is the only post-dominator they share
+    @Test
+    public void severalExits() {
+        FlowGraph graph = Sources.graph(4, new int[]{0, 0, 1}, new int[]{1, 2, 3});
+        DominatorTree post = DominatorTree.postDominators(graph, 0);
+        assertEquals(DominatorTree.EXIT, post.getImmediateDominator(0));
+        assertEquals(3, post.getImmediateDominator(1));
+        int children = post.childEnd(DominatorTree.EXIT) - post.childStart(DominatorTree.EXIT);
+        assertEquals(3, children);
+        check(graph, true, "several exits");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeOutsideMethod() {
+        FlowGraph graph = Sources.graph(2, new int[]{0}, new int[]{1});
+        DominatorTree.dominators(graph, 0).getDepth(2);
+    }
+}
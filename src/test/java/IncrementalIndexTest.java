@@ -0,0 +1,88 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String dot(File source) throws IOException {
+        StringWriter out = new StringWriter();
+        new Parser(source).writeDot(new DotWriter(out));
+        return out.toString();
+    }
+
+    private static String batch(IncrementalIndex index, File path, List<BatchParser.Result> results) {
+        StringWriter out = new StringWriter();
+        BatchParser batch = new BatchParser(2);
+        batch.setIncremental(index);
+        batch.setDotWriter(out);
+        results.addAll(batch.parse(path));
+        return out.toString();
+    }
+
+    // the stored graph is named after the path it is asked for with, not the one it was stored with
+    @Test
+    public void graphIsNamedAfterThePath() throws IOException {
+        File source = CFGListenerTest.write(folder, "Nested.java", CFGListenerTest.NESTED);
+        File other = new File(source.getParentFile(), "./" + source.getName());
+        IncrementalIndex index = new IncrementalIndex(folder.newFolder("index"));
+        String hash = IncrementalIndex.hash(source);
+        index.put(source, hash, dot(source));
+        assertEquals(dot(source), index.get(source, hash));
+        assertEquals(dot(other), index.get(other, hash));
+        assertTrue(index.get(other, hash).startsWith("digraph \"" + other.getPath().replace("\\", "\\\\") + "\""));
+        assertNull(index.get(source, IncrementalIndex.hash(other) + "/statements"));
+    }
+
+    @Test
+    public void unchangedFilesComeFromTheIndex() throws IOException {
+        File dir = folder.newFolder("src");
+        File source = CFGListenerTest.write(folder, "src/Nested.java", CFGListenerTest.NESTED);
+        File indexDir = folder.newFolder("index");
+        List<BatchParser.Result> first = new ArrayList<>();
+        String parsed = batch(new IncrementalIndex(indexDir), dir, first);
+        assertFalse(first.get(0).isUnchanged());
+        assertEquals(dot(source), parsed);
+
+        // the same file reached by another path is unchanged and drawn with the other name
+        File other = new File(dir, "../src");
+        List<BatchParser.Result> second = new ArrayList<>();
+        String stored = batch(new IncrementalIndex(indexDir), other, second);
+        assertTrue(second.get(0).isUnchanged());
+        assertEquals(dot(new File(other, "Nested.java")), stored);
+    }
+
+    // hashes stored by another version of the graphs don't count
+    @Test
+    public void otherVersionsAreParsedAgain() throws IOException {
+        File source = CFGListenerTest.write(folder, "Nested.java", CFGListenerTest.NESTED);
+        File indexDir = folder.newFolder("index");
+        IncrementalIndex index = new IncrementalIndex(indexDir);
+        String hash = IncrementalIndex.hash(source);
+        index.put(source, hash, dot(source));
+        index.save();
+        File properties = new File(indexDir, "index.properties");
+        String text = new String(Files.readAllBytes(properties.toPath()), StandardCharsets.UTF_8);
+        assertTrue(text.contains(IncrementalIndex.VERSION + "\\:" + hash));
+        try (Writer out = Files.newBufferedWriter(properties.toPath(), StandardCharsets.UTF_8)) {
+            out.write(text.replace(IncrementalIndex.VERSION + "\\:" + hash, "1\\:" + hash));
+        }
+        assertNull(new IncrementalIndex(indexDir).get(source, hash));
+    }
+}
@@ -0,0 +1,290 @@
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// the methods skim() finds have to be the ones Java8Parser finds, leaving out those inside code
+public class LazyParserTest {
+
+    static final String DECLARATIONS = String.join("\n",
+            "import java.util.*;",
+            "",
+            "public abstract class Declarations<E extends Comparable<E>> {",
+            "    private final Runnable field = new Runnable() {",
+            "        public void run() {",
+            "            if (true) { }",
+            "        }",
+            "    }, other = () -> { };",
+            "    private final Comparator<E> order = new Comparator<E>() {",
+            "        @Override",
+            "        public int compare(E a, E b) {",
+            "            return a.compareTo(b);",
+            "        }",
+            "    };",
+            "    private int[] values = {1, 2, 3};",
+            "    int count = values.length, copy = count;",
+            "",
+            "    {",
+            "        new Object() {",
+            "            void inInitializer() { }",
+            "        };",
+            "    }",
+            "",
+            "    static {",
+            "        class Local {",
+            "            void inLocal() { }",
+            "        }",
+            "    }",
+            "",
+            "    protected Declarations() {",
+            "        this(new ArrayList<E>());",
+            "    }",
+            "",
+            "    protected <T> Declarations(List<? extends E> list) throws IllegalArgumentException {",
+            "        super();",
+            "    }",
+            "",
+            "    public static <K, V extends Map<K, List<K>>> V generic(K key, V map) {",
+            "        return map;",
+            "    }",
+            "",
+            "    @SuppressWarnings({\"unchecked\", \"rawtypes\"})",
+            "    @Deprecated",
+            "    protected abstract <T extends E> T[] toArray(T[] array, int... sizes) throws Exception;",
+            "",
+            "    private native long address(Object o);",
+            "",
+            "    int[] dims()[] {",
+            "        return new int[0][];",
+            "    }",
+            "",
+            "    enum Planet implements Runnable {",
+            "        MERCURY(1) {",
+            "            @Override",
+            "            double gravity() {",
+            "                return 3.7;",
+            "            }",
+            "        },",
+            "        VENUS(2, new Object() { void inArgument() { } }),",
+            "        EARTH(3) {",
+            "            { int x = 1; }",
+            "        };",
+            "",
+            "        private final int order;",
+            "",
+            "        Planet(int order) {",
+            "            this.order = order;",
+            "        }",
+            "",
+            "        Planet(int order, Object o) {",
+            "            this(order);",
+            "        }",
+            "",
+            "        double gravity() {",
+            "            return 9.8;",
+            "        }",
+            "",
+            "        public void run() {",
+            "            switch (this) {",
+            "                default:",
+            "            }",
+            "        }",
+            "    }",
+            "",
+            "    enum Empty {",
+            "        ;",
+            "        void afterSemicolon() { }",
+            "    }",
+            "",
+            "    interface Shape<T> {",
+            "        int SIDES = 0;",
+            "",
+            "        double area();",
+            "",
+            "        default double twice() {",
+            "            return 2 * area();",
+            "        }",
+            "",
+            "        static <T> Shape<T> empty() {",
+            "            return () -> 0;",
+            "        }",
+            "    }",
+            "",
+            "    @interface Config {",
+            "        String name() default \"x\";",
+            "        int[] sizes() default {1, 2};",
+            "        Class<?> type();",
+            "        Nested nested() default @Nested(level = 1);",
+            "        int LIMIT = 10;",
+            "",
+            "        @interface Nested {",
+            "            int level() default 0;",
+            "        }",
+            "    }",
+            "",
+            "    static class Inner extends Declarations<String> implements Comparable<Inner> {",
+            "        Inner() {",
+            "        }",
+            "",
+            "        @Override",
+            "        protected <T extends String> T[] toArray(T[] array, int... sizes) {",
+            "            return array;",
+            "        }",
+            "",
+            "        public int compareTo(Inner o) {",
+            "            return 0;",
+            "        }",
+            "    }",
+            "}");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // header, name and body of a method as skim() gives them
+    private static String describe(String header, String name, int bodyStart, int bodyStop) {
+        return header + " | " + name + " | " + bodyStart + ".." + bodyStop;
+    }
+
+    private static boolean isDeclaration(ParseTree tree) {
+        for (int c = 0; c < tree.getChildCount(); c++) {
+            if (tree.getChild(c) instanceof ParserRuleContext) {
+                int rule = ((ParserRuleContext) tree.getChild(c)).getRuleIndex();
+                if (rule == Java8Parser.RULE_methodHeader || rule == Java8Parser.RULE_constructorDeclarator)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static String name(ParserRuleContext context) {
+        if (context.getRuleIndex() == Java8Parser.RULE_methodDeclarator)
+            return context.getChild(0).getText();
+        if (context.getRuleIndex() == Java8Parser.RULE_simpleTypeName)
+            return context.getText();
+        for (int c = 0; c < context.getChildCount(); c++) {
+            if (context.getChild(c) instanceof ParserRuleContext) {
+                String name = name((ParserRuleContext) context.getChild(c));
+                if (name != null)
+                    return name;
+            }
+        }
+        return null;
+    }
+
+    // declarations with a method header outside blocks and expressions, in the order of the file
+    private static void declarations(ParserRuleContext context, CommonTokenStream tokens, List<String> out) {
+        int rule = context.getRuleIndex();
+        if (rule == Java8Parser.RULE_block || rule == Java8Parser.RULE_constructorBody
+                || rule == Java8Parser.RULE_expression || rule == Java8Parser.RULE_variableInitializer)
+            return;
+        if (isDeclaration(context)) {
+            // the body comes last, a methodBody of ';' has no block
+            ParserRuleContext body = (ParserRuleContext) context.getChild(context.getChildCount() - 1);
+            boolean hasBlock = body.getStart().getType() == Java8Parser.LBRACE;
+            TokenLabel header = new TokenLabel(tokens, context.getStart().getTokenIndex(),
+                    body.getStart().getTokenIndex() - 1);
+            out.add(describe(header.toString(), name(context), hasBlock ? body.getStart().getTokenIndex() : -1,
+                    hasBlock ? body.getStop().getTokenIndex() : -1));
+            return;
+        }
+        for (int c = 0; c < context.getChildCount(); c++) {
+            if (context.getChild(c) instanceof ParserRuleContext)
+                declarations((ParserRuleContext) context.getChild(c), tokens, out);
+        }
+    }
+
+    private static List<String> parsed(String source) {
+        CommonTokenStream tokens = new CommonTokenStream(new Java8Lexer(new ANTLRInputStream(source)));
+        Java8Parser parser = new Java8Parser(tokens);
+        List<String> methods = new ArrayList<>();
+        declarations(parser.compilationUnit(), tokens, methods);
+        return methods;
+    }
+
+    private static List<String> skimmed(LazyParser parser) {
+        List<String> methods = new ArrayList<>();
+        for (LazyParser.Method method : parser.getMethods())
+            methods.add(describe(method.getHeader().toString(), method.getName(), method.getBodyStart(),
+                    method.getBodyStop()));
+        return methods;
+    }
+
+    @Test
+    public void sameMethodsAsParser() throws IOException {
+        File file = CFGListenerTest.write(folder, "Declarations.java", DECLARATIONS);
+        List<String> expected = parsed(DECLARATIONS);
+        assertEquals(18, expected.size());
+        assertEquals(expected, skimmed(new LazyParser(file)));
+    }
+
+    @Test
+    public void sameMethodsAsParserOnNested() throws IOException {
+        File file = CFGListenerTest.write(folder, "Nested.java", CFGListenerTest.NESTED);
+        assertEquals(parsed(CFGListenerTest.NESTED), skimmed(new LazyParser(file)));
+    }
+
+    @Test
+    public void abstractAndNativeMethodsHaveNoBody() throws IOException {
+        LazyParser parser = new LazyParser(CFGListenerTest.write(folder, "Declarations.java", DECLARATIONS));
+        List<LazyParser.Method> toArray = parser.getMethods("toArray");
+        assertEquals(2, toArray.size());
+        assertFalse(toArray.get(0).hasBody());
+        assertTrue(toArray.get(1).hasBody());
+        assertFalse(parser.getMethods("address").get(0).hasBody());
+        assertFalse(parser.getMethods("area").get(0).hasBody());
+        assertTrue(parser.getMethods("twice").get(0).hasBody());
+        // annotation elements are no methods, with a default value or without
+        assertEquals(Arrays.asList(), parser.getMethods("name"));
+        assertEquals(Arrays.asList(), parser.getMethods("type"));
+        assertEquals(Arrays.asList(), parser.getMethods("level"));
+        for (int i = 0; i < parser.getMethods().size(); i++)
+            assertEquals(i, parser.getMethods().get(i).getIndex());
+    }
+
+    private static String describe(FlowGraph graph, int method) {
+        StringBuilder text = new StringBuilder();
+        int start = graph.getMethodStart(method);
+        for (int n = start; n < graph.getMethodEnd(method); n++) {
+            text.append(graph.getKind(n)).append(' ').append(graph.getLabel(n)).append(" ->");
+            for (int i = graph.successorStart(n); i < graph.successorEnd(n); i++)
+                text.append(' ').append(graph.successor(i) - start);
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    // a body parsed on its own draws what the whole file draws for the method
+    @Test
+    public void bodiesDrawTheSameGraph() throws IOException {
+        FlowGraph whole = Sources.flowGraph(DECLARATIONS);
+        LazyParser parser = new LazyParser(CFGListenerTest.write(folder, "Declarations.java", DECLARATIONS));
+        // both in the order of the file, the whole graph also has the methods of classes inside code
+        int m = 0;
+        for (LazyParser.Method method : parser.getMethods()) {
+            FlowGraphSink sink = new FlowGraphSink();
+            parser.buildFlowGraph(method, sink);
+            FlowGraph lazy = sink.getGraph();
+            while (m < whole.getMethodCount()
+                    && !whole.getLabel(whole.getMethodStart(m)).toString().equals(method.getHeader().toString()))
+                m++;
+            assertTrue(method.toString(), m < whole.getMethodCount());
+            assertEquals(describe(whole, m), describe(lazy, 0));
+            m++;
+        }
+    }
+}
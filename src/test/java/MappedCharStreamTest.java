@@ -0,0 +1,155 @@
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parsers.Java8Lexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+// MappedCharStream has to give what ANTLRInputStream gives for the decoded text
+public class MappedCharStreamTest {
+
+    private static final String SOURCE = "class A {\n    String s = \"x\";\n    int f(int a) { return a + 1; }\n}\n";
+    // two, three and four bytes in UTF-8, the last one a surrogate pair
+    private static final String UNICODE =
+            "class A {\n    String s = \"\u20AC \uD834\uDD1E \u00FC\"; // \u00DF\n    char c = '\u00F1';\n}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedCharStream stream(byte[] content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return new MappedCharStream(file);
+    }
+
+    private static byte[] withBom(byte[] bom, String text, Charset charset) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bom, 0, bom.length);
+        byte[] bytes = text.getBytes(charset);
+        out.write(bytes, 0, bytes.length);
+        return out.toByteArray();
+    }
+
+    // every char one after the other, looking back and ahead at each of them, then every interval
+    private static void assertSame(CharStream expected, CharStream actual) {
+        int n = expected.size();
+        assertEquals(n, actual.size());
+        assertEquals(expected.index(), actual.index());
+        for (int p = 0; p <= n; p++) {
+            for (int i = -3; i <= 3; i++)
+                assertEquals("LA(" + i + ") at " + p, expected.LA(i), actual.LA(i));
+            assertEquals(expected.index(), actual.index());
+            if (p < n) {
+                expected.consume();
+                actual.consume();
+            }
+        }
+        for (int a = 0; a <= n; a++) {
+            for (int b = a; b <= n + 2; b++)
+                assertEquals(a + ".." + b, expected.getText(Interval.of(a, b)), actual.getText(Interval.of(a, b)));
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static void assertSameTokens(String text, CharStream actual) {
+        Java8Lexer expected = new Java8Lexer(new ANTLRInputStream(text));
+        Java8Lexer lexer = new Java8Lexer(actual);
+        while (true) {
+            Token e = expected.nextToken();
+            Token a = lexer.nextToken();
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.getText(), a.getText());
+            assertEquals(e.getStartIndex(), a.getStartIndex());
+            assertEquals(e.getLine(), a.getLine());
+            assertEquals(e.getCharPositionInLine(), a.getCharPositionInLine());
+            if (e.getType() == Token.EOF)
+                break;
+        }
+    }
+
+    @Test
+    public void ascii() throws IOException {
+        MappedCharStream stream = stream(SOURCE.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(StandardCharsets.US_ASCII, stream.getCharset());
+        assertSame(new ANTLRInputStream(SOURCE), stream);
+        assertSameTokens(SOURCE, stream(SOURCE.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void utf8() throws IOException {
+        MappedCharStream stream = stream(UNICODE.getBytes(StandardCharsets.UTF_8));
+        assertEquals(StandardCharsets.UTF_8, stream.getCharset());
+        assertSame(new ANTLRInputStream(UNICODE), stream);
+        assertSameTokens(UNICODE, stream(UNICODE.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void utf8WithBom() throws IOException {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        MappedCharStream stream = stream(withBom(bom, UNICODE, StandardCharsets.UTF_8));
+        assertEquals(StandardCharsets.UTF_8, stream.getCharset());
+        assertSame(new ANTLRInputStream(UNICODE), stream);
+        // an ASCII file with a byte order mark is decoded too
+        assertSame(new ANTLRInputStream(SOURCE), stream(withBom(bom, SOURCE, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void utf16WithBom() throws IOException {
+        byte[] little = {(byte) 0xFF, (byte) 0xFE};
+        MappedCharStream stream = stream(withBom(little, UNICODE, StandardCharsets.UTF_16LE));
+        assertEquals(StandardCharsets.UTF_16LE, stream.getCharset());
+        assertSame(new ANTLRInputStream(UNICODE), stream);
+        byte[] big = {(byte) 0xFE, (byte) 0xFF};
+        assertSame(new ANTLRInputStream(UNICODE), stream(withBom(big, UNICODE, StandardCharsets.UTF_16BE)));
+    }
+
+    @Test
+    public void empty() throws IOException {
+        MappedCharStream stream = stream(new byte[0]);
+        assertEquals(0, stream.size());
+        assertEquals(IntStream.EOF, stream.LA(1));
+        assertEquals(IntStream.EOF, stream.LA(-1));
+        assertEquals("", stream.toString());
+        assertSame(new ANTLRInputStream(""), stream);
+        assertSameTokens("", stream(new byte[0]));
+    }
+
+    @Test
+    public void seek() throws IOException {
+        for (String text : new String[]{SOURCE, UNICODE}) {
+            MappedCharStream stream = stream(text.getBytes(StandardCharsets.UTF_8));
+            ANTLRInputStream expected = new ANTLRInputStream(text);
+            int n = text.length();
+            for (int index : new int[]{0, 1, n / 2, n - 1, n, n + 5, 3, 0}) {
+                expected.seek(index);
+                stream.seek(index);
+                assertEquals(expected.index(), stream.index());
+                for (int i = -2; i <= 2; i++)
+                    assertEquals("LA(" + i + ") after seek(" + index + ")", expected.LA(i), stream.LA(i));
+            }
+            int marker = stream.mark();
+            stream.seek(2);
+            stream.release(marker);
+            assertEquals(text.charAt(2), stream.LA(1));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void consumeAtEnd() throws IOException {
+        MappedCharStream stream = stream("x".getBytes(StandardCharsets.US_ASCII));
+        stream.consume();
+        stream.consume();
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MethodMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> metrics(File file, boolean buildTree) throws IOException {
+        List<String> metrics = new ArrayList<>();
+        Parser parser = new Parser(file);
+        parser.setBuildTree(buildTree);
+        parser.metrics(method -> metrics.add(method.toString()));
+        return metrics;
+    }
+
+    @Test
+    public void sameMetricsWithAndWithoutTree() throws IOException {
+        File file = CFGListenerTest.write(folder, "Nested.java", CFGListenerTest.NESTED);
+        List<String> tree = metrics(file, true);
+        assertEquals(16, tree.size());
+        assertEquals(tree, metrics(file, false));
+    }
+
+    // the counts are those of the graph with a node per statement
+    @Test
+    public void countsMatchTheGraph() throws IOException {
+        File file = CFGListenerTest.write(folder, "Nested.java", CFGListenerTest.NESTED);
+        FlowGraph graph = new Parser(file).buildCFG().toFlowGraph();
+        List<MethodMetrics> metrics = new ArrayList<>();
+        new Parser(file).metrics(metrics::add);
+        assertEquals(graph.getMethodCount(), metrics.size());
+        for (int m = 0; m < graph.getMethodCount(); m++) {
+            int edges = 0;
+            int branches = 0;
+            int returns = 0;
+            for (int n = graph.getMethodStart(m); n < graph.getMethodEnd(m); n++) {
+                edges += graph.successorEnd(n) - graph.successorStart(n);
+                if (graph.getKind(n) == GraphSink.NodeKind.BRANCH)
+                    branches++;
+                if (graph.getKind(n) == GraphSink.NodeKind.RETURN)
+                    returns++;
+            }
+            MethodMetrics method = metrics.get(m);
+            assertEquals(graph.getMethodEnd(m) - graph.getMethodStart(m), method.getNodeCount());
+            assertEquals(edges, method.getEdgeCount());
+            assertEquals(branches, method.getDecisionCount());
+            assertEquals(returns, method.getReturnCount());
+        }
+    }
+
+    @Test
+    public void loopWithBreak() throws IOException {
+        File file = CFGListenerTest.write(folder, "Loop.java", String.join("\n",
+                "class Loop {",
+                "    int f(int[] values) {",
+                "        int sum = 0;",
+                "        for (int v : values) {",
+                "            if (v < 0)",
+                "                break;",
+                "            if (v > 9) {",
+                "                if (v > 99)",
+                "                    return -1;",
+                "            }",
+                "            sum += v;",
+                "        }",
+                "        return sum;",
+                "    }",
+                "}"));
+        for (boolean buildTree : new boolean[]{true, false}) {
+            List<MethodMetrics> metrics = new ArrayList<>();
+            Parser parser = new Parser(file);
+            parser.setBuildTree(buildTree);
+            parser.metrics(metrics::add);
+            MethodMetrics method = metrics.get(0);
+            assertEquals("int f ( int [ ] values )", method.getName());
+            assertEquals(5, method.getComplexity());
+            assertEquals(3, method.getNesting());
+            assertEquals(2, method.getReturnCount());
+            assertEquals(14, method.getNodeCount());
+        }
+    }
+}
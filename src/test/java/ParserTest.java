@@ -0,0 +1,113 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parsers.Java8Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParserTest {
+
+    // the constructs where SLL and LL disagree without Java8Prediction
+    static final String CONFLICTS = String.join("\n",
+            "import java.util.List;",
+            "import java.util.function.Function;",
+            "",
+            "class Conflicts {",
+            "    int[] values = new int[10];",
+            "    Conflicts next;",
+            "",
+            "    int f(int x, List<String> list) {",
+            "        x++;",
+            "        x--;",
+            "        values[0]++;",
+            "        this.next.values[x]--;",
+            "        for (int i = 0; i < x; i++, x--)",
+            "            list.add(String.valueOf(i));",
+            "        int y = x > 0 ? x : -x;",
+            "        boolean b = x > 0 ? y > 0 ? true : false : y < 0;",
+            "        Function<Integer, Integer> g = a -> a > 0 ? a : 0;",
+            "        java.util.Map.Entry<String, Integer> e = null;",
+            "        String s = java.lang.String.valueOf(x) + Conflicts.class.getName();",
+            "        Object o = (Object) java.util.Collections.<String>emptyList();",
+            "        switch (x) {",
+            "            case 1:",
+            "                return x > 0 ? 1 : 2;",
+            "        }",
+            "        return new Conflicts().values.length + this.values[0]++;",
+            "    }",
+            "}");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String tree(File file, boolean twoStage, Parser.Stage stage) throws IOException {
+        Parser parser = new Parser(file);
+        parser.setTwoStage(twoStage);
+        String tree = parser.parseCompilationUnit().toStringTree(Arrays.asList(Java8Parser.ruleNames));
+        assertEquals(file.getName(), stage, parser.getStage());
+        return tree;
+    }
+
+    // the first stage gets through without falling back, and to the tree LL builds
+    @Test
+    public void firstStageIsEnough() throws IOException {
+        List<File> files = Arrays.asList(
+                CFGListenerTest.write(folder, "Conflicts.java", CONFLICTS),
+                CFGListenerTest.write(folder, "Nested.java", CFGListenerTest.NESTED),
+                CFGListenerTest.write(folder, "Declarations.java", LazyParserTest.DECLARATIONS));
+        for (File file : files)
+            assertEquals(file.getName(), tree(file, false, Parser.Stage.LL), tree(file, true, Parser.Stage.SLL));
+    }
+
+    // a chain of n concatenations is parsed in a loop, but its tree is n levels deep
+    static String concatenation(int n) {
+        StringBuilder source = new StringBuilder("class Deep { String f() { String s = \"a\"");
+        for (int i = 0; i < n; i++)
+            source.append(" + \"a\"");
+        return source.append("; return s; } }").toString();
+    }
+
+    // nothing after the parser recurses over the tree: ParseTreeWalker.DEFAULT overflows this stack on it
+    @Test
+    public void deepTreesOnASmallStack() throws Throwable {
+        File file = CFGListenerTest.write(folder, "Deep.java", concatenation(3000));
+        Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                Parser parser = new Parser(file);
+                CFG cfg = parser.buildCFG();
+                assertEquals(3, cfg.toFlowGraph().getNodeCount());
+                assertTrue(cfg.toString().contains("additiveExpression"));
+                List<MethodMetrics> metrics = new ArrayList<>();
+                cfg.metrics(metrics::add);
+                assertEquals(1, metrics.size());
+                // CFGListener on the tree, then without one
+                for (boolean buildTree : new boolean[]{true, false}) {
+                    FlowGraphSink sink = new FlowGraphSink();
+                    parser.setBuildTree(buildTree);
+                    parser.buildFlowGraph(sink);
+                    assertEquals(3, sink.getGraph().getNodeCount());
+                }
+            } catch (Throwable e) {
+                error[0] = e;
+            }
+        }, "deep", 256 << 10);
+        thread.start();
+        thread.join();
+        if (error[0] != null)
+            throw error[0];
+    }
+
+    @Test
+    public void syntaxErrorsFallBackToLL() throws IOException {
+        File file = CFGListenerTest.write(folder, "Broken.java", "class Broken { void f() { int x = ; } }");
+        tree(file, true, Parser.Stage.LL);
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class RenderPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RenderPool pool;
+
+    // fails the graphs that say "fail", writes the others
+    private static class FakeEngine implements RenderEngine {
+        @Override
+        public void render(String dot, int height, File file) throws IOException {
+            if (dot.equals("fail"))
+                throw new IOException("render failed");
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @After
+    public void close() {
+        if (pool != null)
+            pool.close();
+    }
+
+    private IOException failure(String dot) throws Exception {
+        try {
+            pool.submit(dot, 100, folder.newFile()).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return (IOException) e.getCause();
+        } catch (TimeoutException e) {
+            fail("render of " + dot + " hangs");
+        }
+        return null;
+    }
+
+    // the engine of a failed render can't be replaced: the slot stays, the next render starts an engine
+    @Test
+    public void slotIsKeptWhenNoEngineStarts() throws Exception {
+        AtomicBoolean starts = new AtomicBoolean(true);
+        AtomicInteger started = new AtomicInteger();
+        pool = new RenderPool(1, () -> {
+            if (!starts.get())
+                throw new IllegalStateException("can't start");
+            started.incrementAndGet();
+            return new FakeEngine();
+        }, 0);
+
+        starts.set(false);
+        assertEquals("render failed", failure("fail").getMessage());
+        assertEquals("can't start a render engine", failure("ok").getMessage());
+        assertEquals("can't start a render engine", failure("ok").getMessage());
+        starts.set(true);
+        assertNull(failure("ok"));
+        assertNull(failure("ok"));
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    public void failedEnginesAreReplaced() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        pool = new RenderPool(2, () -> {
+            started.incrementAndGet();
+            return new FakeEngine();
+        }, 0);
+        for (int i = 0; i < 5; i++)
+            assertNotNull(failure("fail"));
+        assertNull(failure("ok"));
+        assertEquals(7, started.get());
+    }
+}
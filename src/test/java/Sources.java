@@ -0,0 +1,53 @@
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import parsers.Java8Lexer;
+import parsers.Java8Parser;
+
+// graphs of sources given as text, for the tests
+class Sources {
+
+    private Sources() {
+    }
+
+    static CFG cfg(String source) {
+        CommonTokenStream tokens = new CommonTokenStream(new Java8Lexer(new ANTLRInputStream(source)));
+        Java8Parser parser = new Java8Parser(tokens);
+        return new CFG(parser.compilationUnit(), tokens);
+    }
+
+    // a node per statement
+    static FlowGraph flowGraph(String source) {
+        return cfg(source).toFlowGraph();
+    }
+
+    // the statements as the body of a method with the parameters c and p
+    static FlowGraph method(String... statements) {
+        return flowGraph("class T { int f(boolean c, int p) {\n" + String.join("\n", statements) + "\n} }");
+    }
+
+    // the node of the method with the label, which has to be the only one
+    static int node(FlowGraph graph, int method, String label) {
+        int found = -1;
+        for (int n = graph.getMethodStart(method); n < graph.getMethodEnd(method); n++) {
+            if (graph.getLabel(n).toString().equals(label)) {
+                if (found >= 0)
+                    throw new IllegalArgumentException("two nodes " + label);
+                found = n;
+            }
+        }
+        if (found < 0)
+            throw new IllegalArgumentException("no node " + label);
+        return found;
+    }
+
+    static FlowGraph graph(int nodeCount, int[] sources, int[] targets) {
+        FlowGraphSink sink = new FlowGraphSink();
+        sink.beginMethod("");
+        for (int n = 0; n < nodeCount; n++)
+            sink.node(n, "", n == 0 ? GraphSink.NodeKind.ENTRY : GraphSink.NodeKind.STATEMENT);
+        for (int e = 0; e < sources.length; e++)
+            sink.edge(sources[e], targets[e], GraphSink.EdgeKind.NORMAL);
+        sink.endMethod();
+        return sink.getGraph();
+    }
+}